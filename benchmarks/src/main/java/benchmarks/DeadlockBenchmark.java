@@ -0,0 +1,96 @@
+package benchmarks;
+
+import model.Deadlock.BlockDetector;
+import model.Deadlock.ClosedDiagonalDetector;
+import model.Deadlock.DeadSquareDetector;
+import model.Deadlock.DeadlockDetector;
+import model.Deadlock.FreezeDetector;
+import model.Exceptions.InvalidMapException;
+import model.GameLevel;
+import model.Map.Board;
+import model.Map.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileNotFoundException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cheap deadlock detectors, which the solvers run on every child. The positions come from a fixed
+ * pseudo-random walk, taking the position after every push, so they mix deadlocked and live positions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DeadlockBenchmark {
+    private static final int NUM_POSITIONS = 1 << 8;
+
+    @Param({"13-extreme.txt", "synthetic-200x200-500"})
+    public String level;
+
+    @Param({"dead square", "2x2 block", "freeze", "closed diagonal"})
+    public String detector;
+
+    private DeadlockDetector deadlockDetector;
+    private final long[][] crates = new long[NUM_POSITIONS][];
+    private final int[] pushed = new int[NUM_POSITIONS];
+    private final int[] players = new int[NUM_POSITIONS];
+    private int next;
+
+    @Setup
+    public void setUp() throws InvalidMapException, FileNotFoundException {
+        Map map = GameLevel.readMap(Levels.file(level).toString());
+        Board board = new Board(map.getBoard());
+        switch (detector) {
+            case "dead square":
+                deadlockDetector = new DeadSquareDetector(board);
+                break;
+            case "2x2 block":
+                deadlockDetector = new BlockDetector(board);
+                break;
+            case "freeze":
+                deadlockDetector = new FreezeDetector(board);
+                break;
+            default:
+                deadlockDetector = new ClosedDiagonalDetector(board);
+        }
+
+        SplittableRandom random = new SplittableRandom(3021);
+        Map.Direction[] directions = Map.Direction.values();
+        int numPositions = 0;
+        for (int i = 0; numPositions < NUM_POSITIONS && i < 1_000_000; i++) {
+            Map.Direction d = directions[random.nextInt(directions.length)];
+            if (!board.movePlayer(d) || !board.wasLastMovePush())
+                continue;
+            crates[numPositions] = board.copyCrates();
+            pushed[numPositions] = board.getPlayer() + board.offset(d);
+            players[numPositions] = board.getPlayer();
+            numPositions++;
+        }
+        //levels where the walk gets stuck early repeat the positions found
+        for (int i = numPositions; i < NUM_POSITIONS; i++) {
+            crates[i] = crates[i % numPositions];
+            pushed[i] = pushed[i % numPositions];
+            players[i] = players[i % numPositions];
+        }
+    }
+
+    @Benchmark
+    public boolean isDeadlocked() {
+        int i = next++ & (NUM_POSITIONS - 1);
+        return deadlockDetector.isDeadlocked(crates[i], pushed[i], players[i]);
+    }
+}
@@ -0,0 +1,109 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.SplittableRandom;
+
+/**
+ * Provides map files for the benchmarks, either the maps bundled with the game or synthetic ones.
+ * <p>
+ * A synthetic level is named {@code synthetic-<rows>x<cols>-<crates>}, e.g. {@code synthetic-200x200-500}. It is a
+ * walled room with scattered wall blocks, the given number of crates and destinations, and the player, placed with a
+ * fixed seed so every run benchmarks the same map.
+ */
+final class Levels {
+    private static final String SYNTHETIC = "synthetic-";
+    private static final long SEED = 3021;
+
+    private Levels() {
+    }
+
+    /**
+     * @param name A bundled map file name, or a synthetic level name
+     * @return A file holding the level in the native map format
+     */
+    static Path file(String name) {
+        try {
+            Path file = Files.createTempDirectory("sokoban-benchmark").resolve(name);
+            file.toFile().deleteOnExit();
+            file.getParent().toFile().deleteOnExit();
+            if (name.startsWith(SYNTHETIC)) {
+                Files.write(file, synthetic(name).getBytes(StandardCharsets.UTF_8));
+                return file;
+            }
+            try (InputStream in = Levels.class.getResourceAsStream("/assets/maps/" + name)) {
+                if (in == null)
+                    throw new IllegalArgumentException("No bundled map named " + name);
+                Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param file A map file in the native format
+     * @return The rows of the map, as expected by {@link model.Map.Map#initialize(int, int, char[][])}
+     */
+    static char[][] rep(Path file) {
+        try {
+            String[] lines = Files.readString(file).split("\\R");
+            int rows = Integer.parseInt(lines[0].trim());
+            char[][] rep = new char[rows][];
+            for (int r = 0; r < rows; r++) {
+                rep[r] = lines[r + 2].toCharArray();
+            }
+            return rep;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String synthetic(String name) {
+        String[] parts = name.substring(SYNTHETIC.length()).split("[x-]");
+        int rows = Integer.parseInt(parts[0]);
+        int cols = Integer.parseInt(parts[1]);
+        int crates = Integer.parseInt(parts[2]);
+
+        char[][] map = new char[rows][cols];
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                boolean border = r == 0 || c == 0 || r == rows - 1 || c == cols - 1;
+                map[r][c] = border || random.nextInt(10) == 0 ? '#' : '.';
+            }
+        }
+        //crates and destinations keep off the border ring so most of them can still be pushed
+        place(map, 'c', crates, random);
+        place(map, 'C', crates, random);
+        place(map, '@', 1, random);
+
+        StringBuilder text = new StringBuilder();
+        text.append(rows).append('\n').append(cols).append('\n');
+        for (char[] row : map) {
+            text.append(row).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static void place(char[][] map, char element, int count, SplittableRandom random) {
+        int rows = map.length;
+        int cols = map[0].length;
+        if ((long) (rows - 4) * (cols - 4) < count)
+            throw new IllegalArgumentException("Too many crates for a " + rows + "x" + cols + " map");
+        while (count > 0) {
+            int r = 2 + random.nextInt(rows - 4);
+            int c = 2 + random.nextInt(cols - 4);
+            if (map[r][c] != '.')
+                continue;
+            map[r][c] = element;
+            count--;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import model.Exceptions.InvalidMapException;
+import model.GameLevel;
+import model.Map.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading a level, from its file with {@link GameLevel#loadMap(String)} and from already read rows with
+ * {@link Map#initialize(int, int, char[][])}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LoadBenchmark {
+    @Param({"01-easy.txt", "13-extreme.txt", "synthetic-200x200-500"})
+    public String level;
+
+    private String filename;
+    private char[][] rep;
+    private final GameLevel gameLevel = new GameLevel();
+
+    @Setup
+    public void setUp() {
+        Path file = Levels.file(level);
+        filename = file.toString();
+        rep = Levels.rep(file);
+    }
+
+    @Benchmark
+    public Map loadMap() throws InvalidMapException {
+        gameLevel.loadMap(filename);
+        return gameLevel.getMap();
+    }
+
+    @Benchmark
+    public Map initialize() throws InvalidMapException {
+        Map map = new Map();
+        map.initialize(rep.length, rep[0].length, rep);
+        return map;
+    }
+}
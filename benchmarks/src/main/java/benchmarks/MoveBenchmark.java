@@ -0,0 +1,81 @@
+package benchmarks;
+
+import model.Exceptions.InvalidMapException;
+import model.GameLevel;
+import model.Map.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileNotFoundException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-move work of the game: {@link Map#movePlayer(Map.Direction)} and the win and deadlock checks made
+ * after every move.
+ * <p>
+ * Moves follow a fixed pseudo-random sequence and every move is undone straight away, so the position, and with it
+ * the mix of walks, pushes and blocked moves, stays the same for the whole run. The deadlock check only looks at the
+ * crates pushed since the last check, so it is measured together with the move and its undo through
+ * {@link GameLevel}, as the game makes them; each check then covers the push and the undo of the move before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MoveBenchmark {
+    private static final int NUM_MOVES = 1 << 10;
+
+    @Param({"01-easy.txt", "13-extreme.txt", "synthetic-200x200-500"})
+    public String level;
+
+    private final GameLevel gameLevel = new GameLevel();
+    private Map map;
+    private final Map.Direction[] moves = new Map.Direction[NUM_MOVES];
+    private int next;
+
+    @Setup
+    public void setUp() throws InvalidMapException, FileNotFoundException {
+        gameLevel.setMap(GameLevel.readMap(Levels.file(level).toString()));
+        map = gameLevel.getMap();
+        SplittableRandom random = new SplittableRandom(3021);
+        Map.Direction[] directions = Map.Direction.values();
+        for (int i = 0; i < NUM_MOVES; i++) {
+            moves[i] = directions[random.nextInt(directions.length)];
+        }
+    }
+
+    @Benchmark
+    public boolean movePlayer() {
+        Map.Direction d = moves[next++ & (NUM_MOVES - 1)];
+        boolean moved = map.movePlayer(d);
+        if (moved)
+            map.undoMove(d, map.getBoard().wasLastMovePush());
+        return moved;
+    }
+
+    @Benchmark
+    public boolean isWin() {
+        return gameLevel.isWin();
+    }
+
+    @Benchmark
+    public boolean moveAndCheckDeadlock() {
+        boolean moved = gameLevel.makeMove(moves[next++ & (NUM_MOVES - 1)]);
+        boolean deadlocked = gameLevel.isDeadlocked();
+        if (moved)
+            gameLevel.undo();
+        return deadlocked;
+    }
+}
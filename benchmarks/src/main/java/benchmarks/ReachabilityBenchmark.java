@@ -0,0 +1,54 @@
+package benchmarks;
+
+import model.Exceptions.InvalidMapException;
+import model.GameLevel;
+import model.Map.Board;
+import model.Map.Map;
+import model.Map.Reachability;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Reachability#compute(long[], int)}, the player flood fill which the solver runs once per node
+ * and once per child. The whole region is recomputed every time, as after a push.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ReachabilityBenchmark {
+    @Param({"13-extreme.txt", "synthetic-100x100-200", "synthetic-200x200-500"})
+    public String level;
+
+    private Reachability reachability;
+    private long[] crates;
+    private int player;
+
+    @Setup
+    public void setUp() throws InvalidMapException, FileNotFoundException {
+        Map map = GameLevel.readMap(Levels.file(level).toString());
+        Board board = map.getBoard();
+        reachability = new Reachability(board);
+        crates = board.copyCrates();
+        player = board.getPlayer();
+    }
+
+    @Benchmark
+    public int compute() {
+        return reachability.compute(crates, player);
+    }
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import model.Exceptions.InvalidMapException;
+import model.GameLevel;
+import model.Map.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import viewmodel.MapRenderer;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MapRenderer#render(Canvas, Map)}, which draws a whole map, against
+ * {@link MapRenderer#renderChanged(Canvas, Map)} after a single move.
+ * <p>
+ * The canvas is not attached to a scene, so drawing only records commands and this measures the rendering code
+ * rather than the GPU. The JavaFX toolkit needs a display to start; exclude this benchmark with
+ * {@code -e RenderBenchmark} on headless machines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RenderBenchmark {
+    @Param({"01-easy.txt", "13-extreme.txt", "synthetic-200x200-500"})
+    public String level;
+
+    private Canvas canvas;
+    private Map map;
+    private Map.Direction direction;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InvalidMapException, FileNotFoundException, InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            Platform.startup(started::countDown);
+            started.await();
+        } catch (IllegalStateException e) {
+            //the toolkit was already started by another trial in this fork
+        }
+
+        canvas = new Canvas();
+        map = GameLevel.readMap(Levels.file(level).toString());
+        MapRenderer.render(canvas, map);
+        for (Map.Direction d : Map.Direction.values()) {
+            if (map.movePlayer(d)) {
+                map.undoMove(d, map.getBoard().wasLastMovePush());
+                direction = d;
+                break;
+            }
+        }
+    }
+
+    @Benchmark
+    public Canvas render() {
+        MapRenderer.render(canvas, map);
+        return canvas;
+    }
+
+    /**
+     * Makes a move and draws only the cells it changed, then undoes it without drawing
+     */
+    @Benchmark
+    public Canvas renderChanged() {
+        map.movePlayer(direction);
+        MapRenderer.renderChanged(canvas, map);
+        map.undoMove(direction, map.getBoard().wasLastMovePush());
+        map.clearChangedCells();
+        return canvas;
+    }
+}
@@ -0,0 +1,241 @@
+package main;
+
+import model.Exceptions.InvalidMapException;
+import model.LevelInfo;
+import model.LevelManager;
+import model.Map.Map;
+import model.Solver.BidirectionalSolver;
+import model.Solver.OffHeapSolver;
+import model.Solver.Solution;
+import model.Solver.Solver;
+import model.Solver.TranspositionTable;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves or proves unsolvable every level of a map directory or level pack, and writes a CSV line per level with
+ * its status, moves, pushes, nodes expanded and wall time. Levels are solved in parallel on a work-stealing
+ * {@link ForkJoinPool}, each with its own time and memory limit.
+ * <p>
+ * Usage: {@code BatchSolver <map directory or pack> [--out file.csv] [--threads n] [--timeout seconds]
+ * [--memory megabytes] [--bidirectional | --off-heap megabytes [--spill directory]]}
+ * <p>
+ * Without --out the CSV is written to standard output. Progress is reported on standard error. The memory limit is
+ * per level and defaults to an equal share of the maximum heap for each thread.
+ * <p>
+ * With --bidirectional, levels are solved one at a time by a {@link BidirectionalSolver} which uses all the
+ * threads, rather than several levels at a time by a {@link Solver} each.
+ * <p>
+ * With --off-heap, each level is solved by an {@link OffHeapSolver} which keeps up to the given amount of states
+ * outside the heap, for long searches of large levels. They are kept in direct memory, which may need a larger
+ * {@code -XX:MaxDirectMemorySize}, or with --spill in a memory-mapped file in the given directory. The memory limit
+ * then sizes the transposition table.
+ */
+public class BatchSolver {
+    private static final String HEADER = "level,status,moves,pushes,nodes_expanded,nodes_generated,millis";
+    private static final long DEFAULT_TIMEOUT_SECONDS = 60;
+
+    private final List<LevelInfo> levels;
+    private final long timeoutMillis;
+    private final long memoryBytes;
+    //the threads of each bidirectional search, or 0 to use a forward search per thread
+    private final int searchThreads;
+    //the state store of each off-heap search, or 0 to search on the heap
+    private final long offHeapBytes;
+    private final Path spillDirectory;
+    private final String[] results;
+    private final AtomicInteger numDone = new AtomicInteger();
+
+    private BatchSolver(List<LevelInfo> levels, long timeoutMillis, long memoryBytes, int searchThreads,
+                        long offHeapBytes, Path spillDirectory) {
+        this.levels = levels;
+        this.timeoutMillis = timeoutMillis;
+        this.memoryBytes = memoryBytes;
+        this.searchThreads = searchThreads;
+        this.offHeapBytes = offHeapBytes;
+        this.spillDirectory = spillDirectory;
+        this.results = new String[levels.size()];
+    }
+
+    public static void main(String[] args) throws IOException {
+        String mapDirectory = null;
+        String out = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long timeoutSeconds = DEFAULT_TIMEOUT_SECONDS;
+        long memoryMegabytes = -1;
+        boolean bidirectional = false;
+        long offHeapMegabytes = 0;
+        Path spillDirectory = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--out":
+                        out = args[++i];
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--timeout":
+                        timeoutSeconds = Long.parseLong(args[++i]);
+                        break;
+                    case "--memory":
+                        memoryMegabytes = Long.parseLong(args[++i]);
+                        break;
+                    case "--bidirectional":
+                        bidirectional = true;
+                        break;
+                    case "--off-heap":
+                        offHeapMegabytes = Long.parseLong(args[++i]);
+                        break;
+                    case "--spill":
+                        spillDirectory = Paths.get(args[++i]);
+                        break;
+                    default:
+                        if (mapDirectory != null || args[i].startsWith("--"))
+                            throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                        mapDirectory = args[i];
+                }
+            }
+            if (mapDirectory == null)
+                throw new IllegalArgumentException("No map directory given");
+            if (threads < 1 || timeoutSeconds < 1)
+                throw new IllegalArgumentException("The number of threads and the timeout must be positive");
+            if (offHeapMegabytes < 0 || (offHeapMegabytes > 0 && bidirectional))
+                throw new IllegalArgumentException("--off-heap needs a positive size and cannot be --bidirectional");
+            if (spillDirectory != null && offHeapMegabytes == 0)
+                throw new IllegalArgumentException("--spill needs --off-heap");
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e.getMessage() == null ? "Missing option value" : e.getMessage());
+            System.err.println("Usage: BatchSolver <map directory or pack> [--out file.csv] [--threads n] "
+                    + "[--timeout seconds] [--memory megabytes] "
+                    + "[--bidirectional | --off-heap megabytes [--spill directory]]");
+            System.exit(2);
+            return;
+        }
+
+        //a bidirectional search gets all the threads, and so all the memory
+        int levelThreads = bidirectional ? 1 : threads;
+        long memoryBytes = memoryMegabytes > 0 ? memoryMegabytes << 20
+                : Runtime.getRuntime().maxMemory() / levelThreads;
+
+        LevelManager levelManager = LevelManager.getInstance();
+        levelManager.setMapDirectory(mapDirectory);
+        levelManager.loadLevelNamesFromDisk();
+        try {
+            levelManager.awaitValidation();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        BatchSolver batch = new BatchSolver(levelManager.getLevelInfos(), timeoutSeconds * 1000, memoryBytes,
+                bidirectional ? Math.max(2, threads) : 0, offHeapMegabytes << 20, spillDirectory);
+
+        ForkJoinPool pool = new ForkJoinPool(levelThreads);
+        try {
+            pool.invoke(batch.new SolveRange(0, batch.results.length));
+        } finally {
+            pool.shutdown();
+        }
+
+        try (PrintWriter writer = out == null
+                ? new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : new PrintWriter(Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8))) {
+            writer.println(HEADER);
+            for (String line : batch.results) {
+                writer.println(line);
+            }
+            if (writer.checkError())
+                throw new IOException("Could not write the results");
+        }
+    }
+
+    /**
+     * Solves a single level and formats its CSV line
+     */
+    private String solve(LevelInfo level) {
+        String name = csv(level.getName());
+        if (!level.isValid())
+            return name + "," + level.getStatus() + ",,,,,";
+        Map map;
+        try {
+            map = LevelManager.getInstance().readLevel(level.getName());
+        } catch (InvalidMapException | FileNotFoundException e) {
+            //changed since it was validated
+            return name + "," + LevelInfo.Status.INVALID + ",,,,,";
+        }
+
+        Solution solution;
+        try {
+            if (searchThreads > 0) {
+                BidirectionalSolver solver = new BidirectionalSolver(map);
+                solver.setThreads(searchThreads);
+                solver.setLimits(timeoutMillis, memoryBytes);
+                solution = solver.solve();
+            } else if (offHeapBytes > 0) {
+                OffHeapSolver solver = new OffHeapSolver(map);
+                solver.setStateStore(offHeapBytes, spillDirectory);
+                //the transposition table is then the only part of the search which needs the heap
+                solver.setTranspositionTable(memoryBytes / 2, TranspositionTable.ReplacementPolicy.KEEP_LOWER);
+                solver.setTimeLimit(timeoutMillis);
+                solution = solver.solve();
+            } else {
+                Solver solver = new Solver(map);
+                solver.setLimits(timeoutMillis, memoryBytes);
+                solution = solver.solve();
+            }
+        } catch (OutOfMemoryError e) {
+            //the estimate of the search's memory use was too low, the other levels can still go on
+            return name + "," + Solution.Status.OUT_OF_MEMORY + ",,,,,";
+        }
+        return name + "," + solution.getStatus() + ","
+                + (solution.isSolved() ? solution.getNumMoves() + "," + solution.getNumPushes() : ",") + ","
+                + solution.getNodesExpanded() + "," + solution.getNodesGenerated() + ","
+                + solution.getElapsedMillis();
+    }
+
+    private static String csv(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0)
+            return field;
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Solves the levels in [from, to), splitting the range in half until it is a single level, so idle threads
+     * can steal the other halves
+     */
+    private class SolveRange extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        SolveRange(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SolveRange(from, mid), new SolveRange(mid, to));
+                return;
+            }
+            if (from == to)
+                return;
+
+            results[from] = solve(levels.get(from));
+            System.err.println("[" + numDone.incrementAndGet() + "/" + results.length + "] " + results[from]);
+        }
+    }
+}
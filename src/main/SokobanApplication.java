@@ -2,8 +2,14 @@ package main;
 
 import javafx.application.Application;
 import javafx.stage.Stage;
+import model.LevelManager;
+import model.Metrics.MetricsCache;
+import viewmodel.Config;
 import viewmodel.SceneManager;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 /**
  * Main application
  */
@@ -15,6 +21,13 @@ public class SokobanApplication extends Application {
 
     @Override
     public void start(Stage primaryStage) {
+        //levels are measured in the background and "next level" goes from easiest to hardest
+        try {
+            LevelManager.getInstance().setMetricsCache(new MetricsCache(Paths.get(Config.METRICS_CACHE)));
+            LevelManager.getInstance().setSortByDifficulty(true);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
         SceneManager.getInstance().setStage(primaryStage);
         SceneManager.getInstance().showMainMenuScene();
     }
@@ -0,0 +1,41 @@
+package model.Deadlock;
+
+import model.Map.Bits;
+import model.Map.Board;
+
+/**
+ * A 2x2 block of walls and crates containing the pushed crate and a crate which is not on a destination. None of
+ * the crates in such a block can ever be pushed again.
+ */
+public class BlockDetector extends BoardDetector {
+    public BlockDetector(Board board) {
+        super(board);
+    }
+
+    @Override
+    public String getName() {
+        return "2x2 block";
+    }
+
+    @Override
+    public boolean isDeadlocked(long[] crates, int pushed, int player) {
+        //the four blocks which contain the pushed crate, by their top-left corner
+        return isBlock(crates, pushed) || isBlock(crates, pushed - horizontal) || isBlock(crates, pushed - vertical)
+                || isBlock(crates, pushed - horizontal - vertical);
+    }
+
+    private boolean isBlock(long[] crates, int corner) {
+        return isBlocked(crates, corner) && isBlocked(crates, corner + horizontal)
+                && isBlocked(crates, corner + vertical) && isBlocked(crates, corner + horizontal + vertical)
+                && (isMisplaced(crates, corner) || isMisplaced(crates, corner + horizontal)
+                || isMisplaced(crates, corner + vertical) || isMisplaced(crates, corner + horizontal + vertical));
+    }
+
+    private boolean isBlocked(long[] crates, int square) {
+        return isWall(square) || Bits.get(crates, square);
+    }
+
+    private boolean isMisplaced(long[] crates, int square) {
+        return Bits.get(crates, square) && !isDest(square);
+    }
+}
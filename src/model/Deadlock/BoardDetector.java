@@ -0,0 +1,47 @@
+package model.Deadlock;
+
+import model.Map.Bits;
+import model.Map.Board;
+import model.Map.Map;
+
+/**
+ * The static squares of a board which every detector needs: walls, destinations and dead squares, with the
+ * offsets of the two axes.
+ */
+abstract class BoardDetector implements DeadlockDetector {
+    final long[] walls;
+    final long[] dests;
+    final long[] dead;
+    //the offsets of one step along each axis
+    final int horizontal;
+    final int vertical;
+    //the offsets of one step in each direction
+    final int[] steps;
+
+    BoardDetector(Board board) {
+        walls = board.copyWalls();
+        dests = board.copyDests();
+        dead = new long[walls.length];
+        Board deadSquares = new Board(board);
+        deadSquares.computeDeadSquares();
+        for (int i = 0; i < board.getSize(); i++) {
+            if (deadSquares.isDeadSquare(i))
+                Bits.set(dead, i);
+        }
+        horizontal = board.offset(Map.Direction.RIGHT);
+        vertical = board.offset(Map.Direction.DOWN);
+        steps = new int[]{-horizontal, horizontal, -vertical, vertical};
+    }
+
+    boolean isWall(int square) {
+        return Bits.get(walls, square);
+    }
+
+    boolean isDest(int square) {
+        return Bits.get(dests, square);
+    }
+
+    boolean isDead(int square) {
+        return Bits.get(dead, square);
+    }
+}
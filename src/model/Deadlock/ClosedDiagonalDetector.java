@@ -0,0 +1,74 @@
+package model.Deadlock;
+
+import model.Map.Bits;
+import model.Map.Board;
+
+/**
+ * A closed diagonal deadlock: an empty square next to the pushed crate is closed off on all four sides by walls
+ * and crates, typically a diagonal line of crates against walls, and none of the enclosing crates can ever be
+ * pushed. The player can never get into the square, so no enclosing crate can be pushed away from it, and a crate
+ * can only be pushed into it or sideways if the player can stand on the far side and there is room. Squares held
+ * by walls or other enclosing crates never become free; squares held by other crates are assumed to.
+ * <p>
+ * If no enclosing crate can move, the enclosure is permanent, and it is a deadlock if one of its crates is not on a
+ * destination or the enclosed square is a destination which can never be filled.
+ */
+public class ClosedDiagonalDetector extends BoardDetector {
+    private final int[] enclosing = new int[4];
+
+    public ClosedDiagonalDetector(Board board) {
+        super(board);
+    }
+
+    @Override
+    public String getName() {
+        return "closed diagonal";
+    }
+
+    @Override
+    public boolean isDeadlocked(long[] crates, int pushed, int player) {
+        return isClosed(crates, pushed - horizontal, player) || isClosed(crates, pushed + horizontal, player)
+                || isClosed(crates, pushed - vertical, player) || isClosed(crates, pushed + vertical, player);
+    }
+
+    private boolean isClosed(long[] crates, int square, int player) {
+        if (square == player || isWall(square) || Bits.get(crates, square))
+            return false;
+
+        int numEnclosing = 0;
+        for (int step : steps) {
+            int neighbour = square + step;
+            if (Bits.get(crates, neighbour))
+                enclosing[numEnclosing++] = neighbour;
+            else if (!isWall(neighbour))
+                return false;
+        }
+
+        boolean misplaced = isDest(square);
+        for (int i = 0; i < numEnclosing; i++) {
+            int crate = enclosing[i];
+            //along the axis through the square the player would have to stand beyond the crate, across it on both
+            //sides
+            int toward = square - crate;
+            int across = toward == horizontal || toward == -horizontal ? vertical : horizontal;
+            if (!isFixed(crate - toward, numEnclosing)
+                    || !isFixed(crate - across, numEnclosing) && !isFixed(crate + across, numEnclosing))
+                return false;
+            misplaced |= !isDest(crate);
+        }
+        return misplaced;
+    }
+
+    /**
+     * @return Whether the square is a wall or an enclosing crate, so it never becomes free
+     */
+    private boolean isFixed(int square, int numEnclosing) {
+        if (isWall(square))
+            return true;
+        for (int i = 0; i < numEnclosing; i++) {
+            if (enclosing[i] == square)
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,138 @@
+package model.Deadlock;
+
+import model.Map.Bits;
+import model.Map.Board;
+import model.Map.Reachability;
+import model.Map.Zobrist;
+import model.Solver.Solution;
+import model.Solver.Solver;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A corral deadlock: the pushed crate closes off an area the player cannot reach, a corral, and the crates in and
+ * around it cannot all be brought onto destinations.
+ * <p>
+ * The corral is the connected area of squares the player cannot reach, crates included, next to the pushed crate.
+ * Its crates are solved on their own, on the level without its other crates, by a small, bounded {@link Solver}
+ * search. Leaving the other crates out only makes the sub-problem easier: any solution of the real level also
+ * solves it. So if the sub-problem is unsolvable, so is the level. If the search runs out of nodes or time, no
+ * deadlock is reported. The verdict of every sub-problem is kept for the level, so a corral is only searched once
+ * however often the player comes back to it, e.g. by undoing and redoing a push.
+ * <p>
+ * This is the most expensive detector, and is meant for checking the player's moves rather than for pruning every
+ * node of a search.
+ */
+public class CorralDetector extends BoardDetector {
+    //corrals with more crates are not searched
+    private static final int MAX_CRATES = 8;
+    private static final long SEARCH_MILLIS = 50;
+    private static final long SEARCH_BYTES = 4L << 20;
+    //the most verdicts kept before they are dropped
+    private static final int MAX_VERDICTS = 1 << 16;
+
+    //the level without crates, and the solver of its sub-problems, created by the first search so its distance
+    //tables are only built once per level
+    private final Board empty;
+    private Solver solver;
+    //whether each sub-problem searched so far is deadlocked, by the Zobrist hash of its crates and normalized player
+    private final HashMap<Long, Boolean> verdicts = new HashMap<>();
+    private final Zobrist zobrist;
+    private final Reachability corralReachability;
+    private final Reachability reachability;
+    private final int[] queue;
+    private final int[] stamp;
+    private final int[] corralCrates = new int[MAX_CRATES];
+    private int generation;
+
+    public CorralDetector(Board board) {
+        super(board);
+        empty = new Board(board.getRows(), board.getCols());
+        for (int i = 0; i < board.getSize(); i++) {
+            if (board.isWall(i))
+                empty.setWall(i);
+            if (board.isDest(i))
+                empty.setDest(i);
+        }
+        zobrist = board.getZobrist();
+        reachability = new Reachability(board);
+        corralReachability = new Reachability(board);
+        queue = new int[board.getSize()];
+        stamp = new int[board.getSize()];
+    }
+
+    @Override
+    public String getName() {
+        return "corral";
+    }
+
+    @Override
+    public boolean isDeadlocked(long[] crates, int pushed, int player) {
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        reachability.compute(crates, player);
+        for (int step : steps) {
+            int square = pushed + step;
+            if (stamp[square] != generation && !isWall(square) && !Bits.get(crates, square)
+                    && !reachability.isReachable(square) && isCorralDeadlocked(crates, square, player))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Collects the corral containing the square and solves its crates on their own
+     */
+    private boolean isCorralDeadlocked(long[] crates, int start, int player) {
+        int head = 0;
+        int tail = 0;
+        int numCrates = 0;
+        boolean unfinished = false;
+        queue[tail++] = start;
+        stamp[start] = generation;
+        while (head < tail) {
+            int square = queue[head++];
+            if (Bits.get(crates, square)) {
+                if (numCrates == MAX_CRATES)
+                    return false;
+                corralCrates[numCrates++] = square;
+                unfinished |= !isDest(square);
+            } else {
+                unfinished |= isDest(square);
+            }
+            for (int step : steps) {
+                int next = square + step;
+                if (stamp[next] != generation && !isWall(next) && !reachability.isReachable(next)) {
+                    stamp[next] = generation;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        //every destination in the corral is filled and its crates are on destinations
+        if (!unfinished || numCrates == 0)
+            return false;
+
+        if (solver == null) {
+            solver = Solver.forSubProblem(empty);
+            solver.setLimits(SEARCH_MILLIS, SEARCH_BYTES);
+        }
+        long[] corral = new long[crates.length];
+        long hash = 0;
+        for (int i = 0; i < numCrates; i++) {
+            Bits.set(corral, corralCrates[i]);
+            hash ^= zobrist.crateKey(corralCrates[i]);
+        }
+        hash ^= zobrist.playerKey(corralReachability.compute(corral, player));
+        Boolean deadlocked = verdicts.get(hash);
+        if (deadlocked == null) {
+            deadlocked = solver.solve(corral, player).getStatus() == Solution.Status.UNSOLVABLE;
+            if (verdicts.size() == MAX_VERDICTS)
+                verdicts.clear();
+            verdicts.put(hash, deadlocked);
+        }
+        return deadlocked;
+    }
+}
@@ -0,0 +1,23 @@
+package model.Deadlock;
+
+import model.Map.Board;
+
+/**
+ * A crate on a dead square, from which it can never be pushed onto any destination, see
+ * {@link Board#computeDeadSquares()}
+ */
+public class DeadSquareDetector extends BoardDetector {
+    public DeadSquareDetector(Board board) {
+        super(board);
+    }
+
+    @Override
+    public String getName() {
+        return "dead square";
+    }
+
+    @Override
+    public boolean isDeadlocked(long[] crates, int pushed, int player) {
+        return isDead(pushed);
+    }
+}
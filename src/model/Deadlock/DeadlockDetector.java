@@ -0,0 +1,24 @@
+package model.Deadlock;
+
+/**
+ * Recognises one kind of deadlock: a position from which the level can no longer be solved, whatever the player
+ * does. Detectors are only asked about the crate which was just pushed, so each can look at its surroundings
+ * rather than the whole board.
+ * <p>
+ * A detector must be sound, i.e. never report a position which can still be solved, but may miss deadlocks.
+ * Detectors keep reusable buffers, so an instance must not be used by several threads at once.
+ */
+public interface DeadlockDetector {
+    /**
+     * @return A short name for statistics and messages, e.g. "freeze"
+     */
+    String getName();
+
+    /**
+     * @param crates The crate bitset after the push, indexed like the board
+     * @param pushed The square the crate was pushed onto
+     * @param player The square the player is on after the push
+     * @return Whether the position is deadlocked
+     */
+    boolean isDeadlocked(long[] crates, int pushed, int player);
+}
@@ -0,0 +1,162 @@
+package model.Deadlock;
+
+import model.Map.Board;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs a list of {@link DeadlockDetector}s after a push, in order, until one reports a deadlock. Cheap detectors
+ * should come first, so the expensive ones only run when the cheap ones find nothing.
+ * <p>
+ * For every detector the engine counts how often it was run and how often it found a deadlock, and, if timing is
+ * on, the time spent in it. An engine is used by one thread at a time, e.g. one per search thread.
+ */
+public class DeadlockEngine {
+    private final ArrayList<DeadlockDetector> detectors = new ArrayList<>();
+    private final ArrayList<Stats> stats = new ArrayList<>();
+    private boolean timed;
+
+    /**
+     * @param board The board to create the detectors for
+     * @return An engine with the detectors which take well under a microsecond: dead squares, 2x2 blocks, freeze
+     * and closed diagonal deadlocks, for pruning every node of a search. A board with more crates than
+     * destinations gets none, as every detector assumes each crate needs a destination.
+     */
+    public static DeadlockEngine forSearch(Board board) {
+        if (board.hasSpareCrates())
+            return new DeadlockEngine();
+        return new DeadlockEngine()
+                .add(new DeadSquareDetector(board))
+                .add(new BlockDetector(board))
+                .add(new FreezeDetector(board))
+                .add(new ClosedDiagonalDetector(board));
+    }
+
+    /**
+     * @param board The board to create the detectors for
+     * @return An engine with every detector, including the corral search, for checking the player's moves, or none
+     * for a board with more crates than destinations
+     */
+    public static DeadlockEngine forGameplay(Board board) {
+        if (board.hasSpareCrates())
+            return new DeadlockEngine();
+        return forSearch(board).add(new CorralDetector(board));
+    }
+
+    /**
+     * @param detector A detector to run after the ones added before it
+     * @return This engine
+     */
+    public DeadlockEngine add(DeadlockDetector detector) {
+        detectors.add(detector);
+        stats.add(new Stats(detector.getName()));
+        return this;
+    }
+
+    /**
+     * @param timed Whether to measure the time spent in each detector, which costs two calls to
+     *              {@link System#nanoTime()} per detector run
+     */
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
+    /**
+     * @param crates The crate bitset after the push, indexed like the board
+     * @param pushed The square the crate was pushed onto
+     * @param player The square the player is on after the push
+     * @return The detector which found a deadlock, or null if none did
+     */
+    public DeadlockDetector findDeadlock(long[] crates, int pushed, int player) {
+        for (int i = 0; i < detectors.size(); i++) {
+            DeadlockDetector detector = detectors.get(i);
+            Stats s = stats.get(i);
+            boolean deadlocked;
+            if (timed) {
+                long start = System.nanoTime();
+                deadlocked = detector.isDeadlocked(crates, pushed, player);
+                s.nanos += System.nanoTime() - start;
+            } else {
+                deadlocked = detector.isDeadlocked(crates, pushed, player);
+            }
+            s.calls++;
+            if (deadlocked) {
+                s.hits++;
+                return detector;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @see #findDeadlock(long[], int, int)
+     */
+    public boolean isDeadlocked(long[] crates, int pushed, int player) {
+        return findDeadlock(crates, pushed, player) != null;
+    }
+
+    /**
+     * @param board  The board after the push
+     * @param pushed The square the crate was pushed onto
+     * @return The detector which found a deadlock, or null if none did
+     */
+    public DeadlockDetector findDeadlock(Board board, int pushed) {
+        return findDeadlock(board.copyCrates(), pushed, board.getPlayer());
+    }
+
+    /**
+     * @return The statistics of each detector, in the order they run
+     */
+    public List<Stats> getStats() {
+        return Collections.unmodifiableList(stats);
+    }
+
+    public void resetStats() {
+        for (Stats s : stats) {
+            s.calls = 0;
+            s.hits = 0;
+            s.nanos = 0;
+        }
+    }
+
+    /**
+     * How often a detector ran and found a deadlock, and how long it took
+     */
+    public static class Stats {
+        private final String name;
+        private long calls;
+        private long hits;
+        private long nanos;
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return The total time spent in the detector, or 0 if timing was off
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d hits in %d calls, %.0f ns/call", name, hits, calls,
+                    calls == 0 ? 0.0 : (double) nanos / calls);
+        }
+    }
+}
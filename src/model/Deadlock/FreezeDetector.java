@@ -0,0 +1,81 @@
+package model.Deadlock;
+
+import model.Map.Bits;
+import model.Map.Board;
+
+import java.util.Arrays;
+
+/**
+ * A freeze deadlock: the pushed crate can never be moved again, and it or a crate freezing it is not on a
+ * destination. A crate is frozen when it is blocked along both axes. It is blocked along an axis when
+ * <ul>
+ * <li>there is a wall on either side, or</li>
+ * <li>there are dead squares on both sides, so pushing it either way would deadlock, or</li>
+ * <li>there is a frozen crate on either side.</li>
+ * </ul>
+ * The last rule makes the check recursive, e.g. along a chain of crates against a wall. While a crate is checked
+ * it is treated as a wall, which stops cycles; if it turns out not to be frozen, it and every crate assumed frozen
+ * on its account are released again.
+ */
+public class FreezeDetector extends BoardDetector {
+    //the crates currently treated as walls, as a stack and stamped with the generation of the check
+    private final int[] frozen;
+    private final int[] stamp;
+    private int numFrozen;
+    private int generation;
+
+    public FreezeDetector(Board board) {
+        super(board);
+        frozen = new int[board.getSize()];
+        stamp = new int[board.getSize()];
+    }
+
+    @Override
+    public String getName() {
+        return "freeze";
+    }
+
+    @Override
+    public boolean isDeadlocked(long[] crates, int pushed, int player) {
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        numFrozen = 0;
+        if (!isFrozen(crates, pushed))
+            return false;
+        for (int i = 0; i < numFrozen; i++) {
+            if (!isDest(frozen[i]))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isFrozen(long[] crates, int crate) {
+        int mark = numFrozen;
+        stamp[crate] = generation;
+        frozen[numFrozen++] = crate;
+        if (isBlocked(crates, crate, horizontal) && isBlocked(crates, crate, vertical))
+            return true;
+        for (int i = mark; i < numFrozen; i++) {
+            stamp[frozen[i]] = 0;
+        }
+        numFrozen = mark;
+        return false;
+    }
+
+    private boolean isBlocked(long[] crates, int crate, int axis) {
+        int before = crate - axis;
+        int after = crate + axis;
+        if (isWall(before) || isWall(after) || isAssumedFrozen(before) || isAssumedFrozen(after))
+            return true;
+        if (isDead(before) && isDead(after))
+            return true;
+        return Bits.get(crates, before) && isFrozen(crates, before)
+                || Bits.get(crates, after) && isFrozen(crates, after);
+    }
+
+    private boolean isAssumedFrozen(int square) {
+        return stamp[square] == generation;
+    }
+}
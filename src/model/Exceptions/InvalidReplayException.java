@@ -0,0 +1,13 @@
+package model.Exceptions;
+
+/**
+ * Thrown when a replay file cannot be read, e.g. an unknown format or a malformed move string
+ */
+public class InvalidReplayException extends Exception {
+    /**
+     * @param s The exception message
+     */
+    public InvalidReplayException(String s) {
+        super(s);
+    }
+}
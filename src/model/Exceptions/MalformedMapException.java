@@ -0,0 +1,13 @@
+package model.Exceptions;
+
+/**
+ * Thrown when the map file is not laid out correctly, e.g. a missing size header or a row of the wrong length
+ */
+public class MalformedMapException extends InvalidMapException {
+    /**
+     * @param s The exception message
+     */
+    public MalformedMapException(String s) {
+        super(s);
+    }
+}
@@ -1,37 +1,99 @@
 package model;
 
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
-import javafx.scene.control.Alert;
+import model.Deadlock.DeadlockDetector;
+import model.Deadlock.DeadlockEngine;
 import model.Exceptions.InvalidMapException;
-import model.Exceptions.UnknownElementException;
+import model.Map.Bits;
+import model.Map.Board;
 import model.Map.Map;
-import model.Map.Occupant.Crate;
-import model.Map.Occupiable.DestTile;
-import model.Map.Occupiable.Tile;
-import model.Map.Wall;
+import model.Replay.Replay;
+import model.Solver.Solution;
+import model.Solver.Solver;
 
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
 
 /**
  * A class that loads, stores, modifies, and keeps track of the game map win/deadlock condition. Also keeps tracks
  * of information about this current level, e.g. how many moves the player has made.
+ * <p>
+ * This class does not depend on JavaFX; the UI observes it through a {@link MoveListener}.
  */
 public class GameLevel {
+    private static final Map.Direction[] DIRECTIONS = Map.Direction.values();
+    //a journal entry is the direction ordinal, with this bit set if the move pushed a crate
+    private static final int PUSH_FLAG = 1 << 2;
 
-    private final IntegerProperty numPushes = new SimpleIntegerProperty(0);
+    private final ArrayList<MoveListener> moveListeners = new ArrayList<>();
+    private int numPushes;
     private Map map;
 
-    public IntegerProperty numPushesProperty() {
+    //moves [0, historyPos) have been made, moves [historyPos, historySize) have been undone and can be redone
+    private byte[] history = new byte[64];
+    private int historyPos;
+    private int historySize;
+    //the clock time of each move in the history, for replays
+    private int[] historyMillis = new int[64];
+
+    //the deadlock engine of the current map, created when first needed, the result of the last check, and the
+    //squares of the crates moved since
+    private DeadlockEngine deadlockEngine;
+    private String deadlockReason;
+    private int[] movedCrates = new int[8];
+    private int numMovedCrates;
+
+    private LongSupplier clock;
+    private long mapSetAt;
+    private long levelHash;
+
+    /**
+     * @return The number of moves made on the current map, not counting undone moves
+     */
+    public int getNumPushes() {
         return numPushes;
     }
 
+    /**
+     * @param listener Notified whenever the number of moves changes
+     */
+    public void addMoveListener(MoveListener listener) {
+        moveListeners.add(listener);
+    }
+
+    public void removeMoveListener(MoveListener listener) {
+        moveListeners.remove(listener);
+    }
+
+    private void setNumPushes(int numPushes) {
+        this.numPushes = numPushes;
+        for (MoveListener listener : moveListeners) {
+            listener.numPushesChanged(numPushes);
+        }
+    }
+
     public Map getMap() {
         return map;
     }
 
+    /**
+     * @param clock Gives the time the level has been played for in milliseconds, which is recorded with every move
+     *              for replays. When null, the wall time since the map was set is used.
+     */
+    public void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    private int now() {
+        long millis = clock != null ? clock.getAsLong() : System.currentTimeMillis() - mapSetAt;
+        return (int) Math.min(Math.max(millis, 0), Integer.MAX_VALUE);
+    }
+
     /**
      * Loads and reads the map line by line, instantiates and initializes map
      *
@@ -39,75 +101,120 @@ public class GameLevel {
      * @throws InvalidMapException when the map is invalid
      */
     public void loadMap(String filename) throws InvalidMapException {
-        File f = new File(filename);
-        try (Scanner reader = new Scanner(f)) {
-            int numRows = reader.nextInt();
-            int numCols = reader.nextInt();
-            reader.nextLine();
-
-            char[][] rep = new char[numRows][numCols];
-            for (int r = 0; r < numRows; r++) {
-                String row = reader.nextLine();
-                for (int c = 0; c < numCols; c++) {
-                    rep[r][c] = row.charAt(c);
-                }
-            }
-
-            map = new Map();
-            map.initialize(numRows, numCols, rep);
+        try {
+            setMap(readMap(filename));
         } catch (FileNotFoundException e) {
             e.printStackTrace();
-        } catch (Exception e) {
-            throw new UnknownElementException("The map is invalid");
         }
     }
 
     /**
-     * @return Whether or not the win condition has been satisfied
+     * Replaces the map with the given one and clears the move history and count.
+     *
+     * @param map A map which is not used by anything else
+     */
+    public void setMap(Map map) {
+        this.map = map;
+        deadlockEngine = null;
+        deadlockReason = null;
+        numMovedCrates = 0;
+        historyPos = 0;
+        historySize = 0;
+        mapSetAt = System.currentTimeMillis();
+        levelHash = Replay.levelHash(map.getBoard());
+        setNumPushes(0);
+    }
+
+    /**
+     * Reads the map file and instantiates and initializes a new map from it, see {@link MapParser}
+     *
+     * @param filename the map text filename
+     * @return The new map
+     * @throws InvalidMapException   when the map is invalid
+     * @throws FileNotFoundException when the file does not exist
+     */
+    public static Map readMap(String filename) throws InvalidMapException, FileNotFoundException {
+        try {
+            return MapParser.forThread().parse(Paths.get(filename));
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return Whether or not the win condition has been satisfied, i.e. every destination has a crate on it
      */
     public boolean isWin() {
-        return map.getDestTiles().stream().allMatch(DestTile::isCompleted);
+        return map.isSolved();
     }
 
     /**
-     * When no crates can be moved but the game is not won, then deadlock has occurred
+     * Checks the position for deadlock, i.e. whether the level can no longer be won, with the detectors of
+     * {@link DeadlockEngine#forGameplay(Board)}. Crates on dead squares are counted on every push, so that check is
+     * O(1); the other detectors look at each crate moved since the last check, so positions are not checked again.
      *
      * @return Whether deadlock has occurred
      */
     public boolean isDeadlocked() {
+        return getDeadlockReason() != null;
+    }
 
-        boolean test = true; //for all crate cannot move anymore
-
-        for (int i = 0; i < map.getCrates().size(); i++) {
-
-            int r = map.getCrates().get(i).getR();
-            int c = map.getCrates().get(i).getC();
-
-            if (map.getCells()[r][c] instanceof DestTile)
-                continue;
-
-            if (map.getCells()[r - 1][c] instanceof Wall)
-                if (map.getCells()[r][c - 1] instanceof Wall || map.getCells()[r][c + 1] instanceof Wall)
-                    return true;
-
-            if (map.getCells()[r + 1][c] instanceof Wall)
-                if (map.getCells()[r][c - 1] instanceof Wall || map.getCells()[r][c + 1] instanceof Wall)
-                    return true;
+    /**
+     * @return The name of the detector which found the current position deadlocked, or null if it is not
+     */
+    public String getDeadlockReason() {
+        Board board = map.getBoard();
+        //a spare crate may be left on a dead square
+        if (board.getNumDeadCrates() > 0 && !board.hasSpareCrates())
+            return "dead square";
+        if (numMovedCrates > 0) {
+            if (deadlockEngine == null)
+                deadlockEngine = DeadlockEngine.forGameplay(board);
+            long[] crates = board.copyCrates();
+            deadlockReason = null;
+            for (int i = 0; i < numMovedCrates && deadlockReason == null; i++) {
+                if (!Bits.get(crates, movedCrates[i]))
+                    continue;
+                DeadlockDetector detector = deadlockEngine.findDeadlock(crates, movedCrates[i], board.getPlayer());
+                if (detector != null)
+                    deadlockReason = detector.getName();
+            }
+            numMovedCrates = 0;
         }
+        return deadlockReason;
+    }
 
-        //--------------------------original code by TA
-        for (Crate c : map.getCrates()) {
-            boolean canMoveLR = map.isOccupiableAndNotOccupiedWithCrate(c.getR(), c.getC() - 1)
-                    && map.isOccupiableAndNotOccupiedWithCrate(c.getR(), c.getC() + 1);
-            boolean canMoveUD = map.isOccupiableAndNotOccupiedWithCrate(c.getR() - 1, c.getC()) &&
-                    map.isOccupiableAndNotOccupiedWithCrate(c.getR() + 1, c.getC());
-            if (canMoveLR || canMoveUD)
-                test = false;
-        }
+    /**
+     * Notes the crate moved by the push, or the undo of a push, just made in the given direction for the next
+     * deadlock check. The position is no longer the one last checked.
+     */
+    private void crateMoved(Map.Direction d) {
+        Board board = map.getBoard();
+        if (numMovedCrates == movedCrates.length)
+            movedCrates = Arrays.copyOf(movedCrates, movedCrates.length * 2);
+        movedCrates[numMovedCrates++] = board.getPlayer() + board.offset(d);
+        deadlockReason = null;
+    }
 
-        return test;
+    /**
+     * @return The deadlock engine of the current map, with the statistics of its detectors, or null if no push
+     * has been checked yet
+     */
+    public DeadlockEngine getDeadlockEngine() {
+        return deadlockEngine;
+    }
 
+    /**
+     * Searches for a push-optimal solution from the current position. The map itself is not modified.
+     *
+     * @return The solution, whose moves can be replayed with {@link #makeMove(char)}
+     */
+    public Solution solve() {
+        return new Solver(map).solve();
     }
+
     /**
      * @param c The char corresponding to a move from the user
      *          w: up
@@ -117,24 +224,130 @@ public class GameLevel {
      * @return Whether or not the move was successful
      */
     public boolean makeMove(char c) {
-        boolean madeMove = false;
         switch (c) {
             case 'w':
-                madeMove = map.movePlayer(Map.Direction.UP);
-                break;
+                return makeMove(Map.Direction.UP);
             case 'a':
-                madeMove = map.movePlayer(Map.Direction.LEFT);
-                break;
+                return makeMove(Map.Direction.LEFT);
             case 's':
-                madeMove = map.movePlayer(Map.Direction.DOWN);
-                break;
+                return makeMove(Map.Direction.DOWN);
             case 'd':
-                madeMove = map.movePlayer(Map.Direction.RIGHT);
-                break;
+                return makeMove(Map.Direction.RIGHT);
+            default:
+                return false;
         }
+    }
+
+    /**
+     * @param d The direction to move the player in
+     * @return Whether or not the move was successful
+     */
+    public boolean makeMove(Map.Direction d) {
+        boolean madeMove = map.movePlayer(d);
         if (madeMove) {
-            numPushes.setValue(numPushes.getValue() + 1);
+            setNumPushes(numPushes + 1);
+            record(d, map.getBoard().wasLastMovePush());
         }
         return madeMove;
     }
+
+    /**
+     * Makes a sequence of moves, e.g. a plan from {@link MovePlanner}, stopping at the first one which cannot be
+     * made. The caller only needs to render and check for a win or deadlock once afterwards.
+     *
+     * @param moves The moves to make in order
+     * @return The number of moves made
+     */
+    public int makeMoves(List<Map.Direction> moves) {
+        int made = 0;
+        for (Map.Direction d : moves) {
+            if (!makeMove(d))
+                break;
+            made++;
+        }
+        return made;
+    }
+
+    /**
+     * Appends a move to the history, discarding any moves which could have been redone.
+     */
+    private void record(Map.Direction d, boolean pushed) {
+        if (pushed)
+            crateMoved(d);
+        if (historyPos == history.length) {
+            history = Arrays.copyOf(history, history.length * 2);
+            historyMillis = Arrays.copyOf(historyMillis, history.length);
+        }
+        historyMillis[historyPos] = now();
+        history[historyPos++] = (byte) (pushed ? d.ordinal() | PUSH_FLAG : d.ordinal());
+        historySize = historyPos;
+    }
+
+    /**
+     * Reverts the last move, pulling back the crate if it was a push.
+     *
+     * @return Whether there was a move to undo
+     */
+    public boolean undo() {
+        if (historyPos == 0)
+            return false;
+        int entry = history[--historyPos];
+        map.undoMove(DIRECTIONS[entry & ~PUSH_FLAG], (entry & PUSH_FLAG) != 0);
+        if ((entry & PUSH_FLAG) != 0)
+            crateMoved(DIRECTIONS[entry & ~PUSH_FLAG]);
+        setNumPushes(numPushes - 1);
+        return true;
+    }
+
+    /**
+     * Makes the last undone move again.
+     *
+     * @return Whether there was a move to redo
+     */
+    public boolean redo() {
+        if (historyPos == historySize)
+            return false;
+        historyMillis[historyPos] = now();
+        int entry = history[historyPos++];
+        map.movePlayer(DIRECTIONS[entry & ~PUSH_FLAG]);
+        if ((entry & PUSH_FLAG) != 0)
+            crateMoved(DIRECTIONS[entry & ~PUSH_FLAG]);
+        setNumPushes(numPushes + 1);
+        return true;
+    }
+
+    public boolean canUndo() {
+        return historyPos > 0;
+    }
+
+    public boolean canRedo() {
+        return historyPos < historySize;
+    }
+
+    /**
+     * @return The moves made on the current map so far, not counting undone moves, with the time each was made.
+     * Saved once the level is won, it can be played back with {@link model.Replay.ReplayEngine}.
+     */
+    public Replay getReplay() {
+        char[] moves = new char[historyPos];
+        for (int i = 0; i < historyPos; i++) {
+            moves[i] = Replay.toLurd(DIRECTIONS[history[i] & ~PUSH_FLAG], (history[i] & PUSH_FLAG) != 0);
+        }
+        int[] times = Arrays.copyOf(historyMillis, historyPos);
+        //undoing and redoing can leave the times out of order
+        for (int i = 1; i < historyPos; i++) {
+            times[i] = Math.max(times[i], times[i - 1]);
+        }
+        return new Replay(levelHash, new String(moves), times);
+    }
+
+    /**
+     * Listens for changes in the number of moves made on the current map
+     */
+    public interface MoveListener {
+        /**
+         * @param numPushes The number of moves after the change
+         */
+        void numPushesChanged(int numPushes);
+    }
 }
@@ -0,0 +1,99 @@
+package model;
+
+import model.Exceptions.InvalidMapException;
+import model.Map.Map;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps parsed levels in memory so that selecting or restarting a level does not read and parse the map file again.
+ * <p>
+ * Each entry is a parsed template map keyed by file path and last modified time, so an edited file is parsed again.
+ * Templates are never handed out; callers get a fresh copy to play on. The least recently used templates are
+ * evicted once the total number of cells in the cache exceeds the budget.
+ */
+public class LevelCache {
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxCells;
+    private long totalCells;
+
+    /**
+     * @param maxCells The maximum total number of cells over all cached levels
+     */
+    public LevelCache(long maxCells) {
+        this.maxCells = maxCells;
+    }
+
+    /**
+     * @param filename The map text filename
+     * @return A new map for the level, copied from the cached template if it is still up to date
+     * @throws InvalidMapException   when the map is invalid
+     * @throws FileNotFoundException when the file does not exist
+     */
+    public Map load(String filename) throws InvalidMapException, FileNotFoundException {
+        return load(filename, new File(filename).lastModified(), () -> GameLevel.readMap(filename));
+    }
+
+    /**
+     * @param key          The key of the level, e.g. its file path
+     * @param lastModified The last modified time of the file holding the level
+     * @param loader       Parses the level if it is not cached or the cached template is out of date
+     * @return A new map for the level, copied from the cached template if it is still up to date
+     * @throws InvalidMapException   when the map is invalid
+     * @throws FileNotFoundException when the level does not exist
+     */
+    public Map load(String key, long lastModified, Loader loader) throws InvalidMapException, FileNotFoundException {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.lastModified != lastModified) {
+            if (entry != null)
+                remove(key);
+            entry = new Entry(loader.load(), lastModified);
+            entries.put(key, entry);
+            totalCells += entry.numCells;
+            evict();
+        }
+        return new Map(entry.template);
+    }
+
+    public void clear() {
+        entries.clear();
+        totalCells = 0;
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null)
+            totalCells -= entry.numCells;
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        //never evict the entry which was just added, even if it is larger than the budget on its own
+        while (totalCells > maxCells && entries.size() > 1) {
+            totalCells -= it.next().numCells;
+            it.remove();
+        }
+    }
+
+    /**
+     * Parses a level which is not in the cache
+     */
+    public interface Loader {
+        Map load() throws InvalidMapException, FileNotFoundException;
+    }
+
+    private static class Entry {
+        private final Map template;
+        private final long lastModified;
+        private final long numCells;
+
+        private Entry(Map template, long lastModified) {
+            this.template = template;
+            this.lastModified = lastModified;
+            this.numCells = (long) template.getBoard().getRows() * template.getBoard().getCols();
+        }
+    }
+}
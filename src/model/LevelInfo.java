@@ -0,0 +1,84 @@
+package model;
+
+import model.Map.Map;
+
+/**
+ * What validating a level found out about it: whether it is valid, and if so its size and number of crates
+ */
+public class LevelInfo {
+    private final String name;
+    private final Status status;
+    private final int rows;
+    private final int cols;
+    private final int numCrates;
+    private final String error;
+
+    private LevelInfo(String name, Status status, int rows, int cols, int numCrates, String error) {
+        this.name = name;
+        this.status = status;
+        this.rows = rows;
+        this.cols = cols;
+        this.numCrates = numCrates;
+        this.error = error;
+    }
+
+    /**
+     * @param name The level name
+     * @param map  The parsed level
+     * @return The info of a valid level
+     */
+    static LevelInfo valid(String name, Map map) {
+        return new LevelInfo(name, Status.VALID, map.getBoard().getRows(), map.getBoard().getCols(),
+                map.getCrates().size(), null);
+    }
+
+    /**
+     * @param name  The level name
+     * @param error Why the level could not be loaded
+     * @return The info of an invalid level
+     */
+    static LevelInfo invalid(String name, String error) {
+        return new LevelInfo(name, Status.INVALID, 0, 0, 0, error);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isValid() {
+        return status == Status.VALID;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getNumCrates() {
+        return numCrates;
+    }
+
+    /**
+     * @return Why the level is invalid, or null if it is valid
+     */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return isValid() ? rows + "x" + cols + ", " + numCrates + (numCrates == 1 ? " crate" : " crates")
+                : "invalid: " + error;
+    }
+
+    public enum Status {
+        VALID, INVALID
+    }
+}
@@ -1,13 +1,10 @@
 package model;
 
-import javafx.application.Platform;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import model.Exceptions.InvalidMapException;
+import model.Map.Map;
+import model.Metrics.LevelMetrics;
+import model.Metrics.MetricsCache;
+import model.Replay.Replay;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -15,26 +12,71 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Stream;
 
 /**
  * Keeps track of the current GameLevel and level name. Also tracks information
  * that's related to this game level but not specific to the map of the game
  * level, i.e. how long the player has been playing the level, how many restarts, etc.
+ * <p>
+ * This class does not depend on JavaFX, so levels can be loaded and played headless. The UI observes it through a
+ * {@link Listener}.
+ * <p>
+ * Levels are validated in the background when they are loaded from disk, and only valid levels appear in the level
+ * names. The level names are guarded by their own lock, since validation threads add to them.
+ * <p>
+ * With a {@link MetricsCache}, valid levels are then measured on the same threads, see {@link LevelMetrics}, and
+ * {@link #getNextLevelName()} can go through the levels from easiest to hardest.
  */
 public class LevelManager {
     private static final LevelManager ourInstance = new LevelManager();
-    private final ObservableList<String> levelNames = FXCollections.observableArrayList();
-    private final StringProperty curLevelNameProperty = new SimpleStringProperty();
-    private final IntegerProperty curGameLevelExistedDuration = new SimpleIntegerProperty();
-    private final IntegerProperty curGameLevelNumRestarts = new SimpleIntegerProperty();
+    private static final long MAX_CACHED_CELLS = 1_000_000;
+    private static final String REPLAY_EXTENSION = ".replay";
+    private static final DateTimeFormatter REPLAY_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int VALIDATION_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    //the search limits for measuring a level
+    private static final long MEASURE_MILLIS = 5_000;
+    private static final long MEASURE_BYTES = Runtime.getRuntime().maxMemory() / (2 * VALIDATION_THREADS);
+    //valid levels, in the order they were listed
+    private final ArrayList<String> levelNames = new ArrayList<>();
+    //every listed level, with its position in the listing and its info once validated
+    private List<String> listedNames = Collections.emptyList();
+    private final HashMap<String, Integer> listedIndices = new HashMap<>();
+    private final HashMap<String, LevelInfo> levelInfos = new HashMap<>();
+    private int numUnvalidated;
+    //the metrics of the valid levels measured so far, and the number of valid levels still to be measured
+    private final HashMap<String, LevelMetrics> levelMetrics = new HashMap<>();
+    private int numUnmeasured;
+    //the valid levels from easiest to hardest, sorted when first needed after a level or its metrics were added
+    private List<String> levelNamesByDifficulty;
+    private volatile MetricsCache metricsCache;
+    private volatile boolean sortByDifficulty;
+    //incremented on every load, so results of an earlier load which is still being validated are dropped
+    private volatile int loadGeneration;
+    private ExecutorService validator;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private String curLevelName;
+    private int curGameLevelNumRestarts;
     private final GameLevel gameLevel = new GameLevel();
-    private Timer t = new Timer(true); //declare as daemon, so application exits when Platform.exit is called
-    private String mapDirectory = "";
+    private final LevelCache levelCache = new LevelCache(MAX_CACHED_CELLS);
+    private final LevelTimer levelTimer = new LevelTimer();
+    private volatile String mapDirectory = "";
+    //set when the map directory is a single pack file rather than a directory of map files
+    private volatile LevelPack levelPack;
 
     private LevelManager() {
+        //replays are timed by the level timer, so pauses for dialogs are left out
+        gameLevel.setClock(levelTimer::getElapsedMillis);
     }
 
     public static LevelManager getInstance() {
@@ -45,33 +87,319 @@ public class LevelManager {
         this.mapDirectory = mapDirectory;
     }
 
+    /**
+     * Enables measuring levels from the next {@link #loadLevelNamesFromDisk()} on. Levels found in the cache are not
+     * measured again, and new measurements are added to it.
+     *
+     * @param cache The cache of level metrics, or null to stop measuring levels
+     */
+    public void setMetricsCache(MetricsCache cache) {
+        this.metricsCache = cache;
+    }
+
+    public MetricsCache getMetricsCache() {
+        return metricsCache;
+    }
+
+    /**
+     * @param sortByDifficulty Whether {@link #getNextLevelName()} follows {@link #getLevelNamesByDifficulty()}
+     *                         rather than the listing order
+     */
+    public void setSortByDifficulty(boolean sortByDifficulty) {
+        this.sortByDifficulty = sortByDifficulty;
+    }
+
+    public boolean isSortByDifficulty() {
+        return sortByDifficulty;
+    }
+
     public GameLevel getGameLevel() {
         return gameLevel;
     }
 
+    /**
+     * @param listener Notified of changes to the level names and the current level's name and restarts
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
     /**
      * Clears and loads the the level names into {@link #levelNames}. Can be done succinctly using
      * Streams, Predicates, and Consumers. Load the files by alphabetical sorted order.
      * <p>
+     * If the map directory is actually a single {@link LevelPack} file, the level names are the names of the levels
+     * in the pack, in pack order.
+     * <p>
+     * Only the listing happens on the calling thread. Every level is then parsed on a bounded pool of validation
+     * threads, and valid levels are added to the level names, in listing order, as they complete. Listeners are
+     * notified through {@link Listener#levelAdded(int, String)} on the validation threads. Use
+     * {@link #awaitValidation()} to wait for all of them.
+     * <p>
      * Hints: Files.walk(Paths.get(mapDirectory), 1) returns a Stream of files 1 folder deep
      */
     public void loadLevelNamesFromDisk() {
         //TODO
 
-        levelNames.clear();
+        closeLevelPack();
+        List<String> names = new ArrayList<>();
+
+        Path dir = Paths.get(mapDirectory);
+        if (Files.isRegularFile(dir)) {
+            try {
+                levelPack = LevelPack.open(dir);
+                names = levelPack.getNames();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else {
+            try (Stream<Path> files = Files.walk(dir, 1)) {
+                files.filter(Files::isRegularFile)
+                        .map(p -> p.getFileName().toString())
+                        .sorted()
+                        .forEach(names::add);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        int generation;
+        synchronized (levelNames) {
+            generation = ++loadGeneration;
+            levelNames.clear();
+            levelNamesByDifficulty = null;
+            levelInfos.clear();
+            levelMetrics.clear();
+            numUnmeasured = 0;
+            listedIndices.clear();
+            listedNames = names;
+            for (int i = 0; i < names.size(); i++) {
+                listedIndices.put(names.get(i), i);
+            }
+            numUnvalidated = names.size();
+            fireLevelNamesChanged();
+            levelNames.notifyAll();
+        }
+
+        if (validator == null)
+            validator = Executors.newFixedThreadPool(VALIDATION_THREADS, task -> {
+                Thread thread = new Thread(task, "level-validator");
+                thread.setDaemon(true);
+                return thread;
+            });
+        for (String name : names) {
+            validator.execute(() -> validate(name, generation));
+        }
+    }
+
+    /**
+     * Parses a listed level and records the result, adding the level to the level names if it is valid. Valid
+     * levels are then queued to be measured, after the levels still to be validated.
+     */
+    private void validate(String name, int generation) {
+        if (generation != loadGeneration)
+            return;
+        LevelInfo info;
+        long levelHash = 0;
+        try {
+            Map map = readLevel(name);
+            info = LevelInfo.valid(name, map);
+            levelHash = Replay.levelHash(map.getBoard());
+        } catch (InvalidMapException | FileNotFoundException e) {
+            info = LevelInfo.invalid(name, e.getMessage());
+        } catch (RuntimeException | Error e) {
+            //e.g. an OutOfMemoryError from a huge map, which must not stop the level from being counted as validated
+            info = LevelInfo.invalid(name, e.toString());
+        }
+
+        MetricsCache cache = metricsCache;
+        boolean measure = false;
+        synchronized (levelNames) {
+            if (generation != loadGeneration)
+                return;
+            levelInfos.put(name, info);
+            if (info.isValid()) {
+                //binary search for the place of the level among the valid levels listed before it
+                int listed = listedIndices.get(name);
+                int low = 0;
+                int high = levelNames.size();
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (listedIndices.get(levelNames.get(mid)) < listed)
+                        low = mid + 1;
+                    else
+                        high = mid;
+                }
+                levelNames.add(low, name);
+                levelNamesByDifficulty = null;
+                for (Listener listener : listeners) {
+                    listener.levelAdded(low, name);
+                }
+
+                measure = cache != null;
+                if (measure)
+                    numUnmeasured++;
+            }
+            if (--numUnvalidated == 0)
+                levelNames.notifyAll();
+        }
+
+        if (measure) {
+            long hash = levelHash;
+            validator.execute(() -> measure(name, hash, cache, generation));
+        }
+    }
+
+    /**
+     * Looks up the metrics of a valid level in the cache, or measures the level and adds them to it
+     */
+    private void measure(String name, long levelHash, MetricsCache cache, int generation) {
+        if (generation != loadGeneration)
+            return;
+        LevelMetrics metrics = cache.get(levelHash);
+        if (metrics == null) {
+            try {
+                metrics = LevelMetrics.measure(readLevel(name), MEASURE_MILLIS, MEASURE_BYTES);
+                cache.put(levelHash, metrics);
+            } catch (InvalidMapException | FileNotFoundException | RuntimeException | Error e) {
+                //changed since it was validated, or too large to search, it is left unmeasured
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        synchronized (levelNames) {
+            if (generation != loadGeneration)
+                return;
+            if (metrics != null) {
+                levelMetrics.put(name, metrics);
+                levelNamesByDifficulty = null;
+            }
+            if (--numUnmeasured == 0)
+                levelNames.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until every level of the last load has been validated.
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public void awaitValidation() throws InterruptedException {
+        synchronized (levelNames) {
+            while (numUnvalidated > 0) {
+                levelNames.wait();
+            }
+        }
+    }
 
-        File dest = new File(mapDirectory);
-        for (int i = 0; i < dest.listFiles().length; i++)
-            levelNames.add(dest.listFiles()[i].getName());
+    /**
+     * @return Whether every level of the last load has been validated
+     */
+    public boolean isValidated() {
+        synchronized (levelNames) {
+            return numUnvalidated == 0;
+        }
+    }
 
+    /**
+     * @param levelName The level name
+     * @return What validation found out about the level, or null if it has not been validated yet
+     */
+    public LevelInfo getLevelInfo(String levelName) {
+        synchronized (levelNames) {
+            return levelInfos.get(levelName);
+        }
     }
 
-    public ObservableList<String> getLevelNames() {
-        return levelNames;
+    /**
+     * @return The infos of every listed level which has been validated so far, valid or not, in listing order
+     */
+    public List<LevelInfo> getLevelInfos() {
+        synchronized (levelNames) {
+            List<LevelInfo> infos = new ArrayList<>(levelInfos.size());
+            for (String name : listedNames) {
+                LevelInfo info = levelInfos.get(name);
+                if (info != null)
+                    infos.add(info);
+            }
+            return infos;
+        }
     }
 
-    public StringProperty currentLevelNameProperty() {
-        return curLevelNameProperty;
+    /**
+     * Blocks until every level of the last load has been validated and, if there is a metrics cache, measured.
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public void awaitMetrics() throws InterruptedException {
+        synchronized (levelNames) {
+            while (numUnvalidated > 0 || numUnmeasured > 0) {
+                levelNames.wait();
+            }
+        }
+    }
+
+    /**
+     * @param levelName The level name
+     * @return The metrics of the level, or null if it has not been measured
+     */
+    public LevelMetrics getLevelMetrics(String levelName) {
+        synchronized (levelNames) {
+            return levelMetrics.get(levelName);
+        }
+    }
+
+    /**
+     * @return The names of the valid levels validated so far from easiest to hardest, see
+     * {@link LevelMetrics#DIFFICULTY}. Levels which have not been measured yet come last, in listing order.
+     */
+    public List<String> getLevelNamesByDifficulty() {
+        synchronized (levelNames) {
+            return new ArrayList<>(sortedByDifficulty());
+        }
+    }
+
+    /**
+     * Must be called while holding the lock on the level names
+     *
+     * @return The valid levels from easiest to hardest, which must not be modified
+     */
+    private List<String> sortedByDifficulty() {
+        if (levelNamesByDifficulty == null) {
+            levelNamesByDifficulty = new ArrayList<>(levelNames);
+            levelNamesByDifficulty.sort(Comparator.comparing(levelMetrics::get,
+                    Comparator.nullsLast(LevelMetrics.DIFFICULTY)));
+        }
+        return levelNamesByDifficulty;
+    }
+
+    private void closeLevelPack() {
+        if (levelPack == null)
+            return;
+        try {
+            levelPack.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        levelPack = null;
+    }
+
+    /**
+     * @return A copy of the names of the valid levels validated so far
+     */
+    public List<String> getLevelNames() {
+        synchronized (levelNames) {
+            return List.copyOf(levelNames);
+        }
+    }
+
+    public String getCurrentLevelName() {
+        return curLevelName;
     }
 
     /**
@@ -80,6 +408,8 @@ public class LevelManager {
      * <p>
      * Hints: don't forget to update the level name and existed duration properties, and load the map for
      * the GameLevel object.
+     * <p>
+     * Parsed levels are kept in a {@link LevelCache}, so selecting or restarting a level does not read the disk.
      *
      * @param levelName The level name to set
      * @throws InvalidMapException if the map was invalid
@@ -89,89 +419,190 @@ public class LevelManager {
 
         if (levelName == null)
             return;
-        this.curLevelNameProperty.setValue(levelName);
-        curGameLevelExistedDurationProperty().set(0);
-        this.getGameLevel().numPushesProperty().set(0);
+        this.curLevelName = levelName;
+        for (Listener listener : listeners) {
+            listener.currentLevelNameChanged(levelName);
+        }
         resetLevelTimer();
 
+        if (levelPack != null) {
+            LevelPack pack = levelPack;
+            String key = pack.getPath() + "#" + levelName;
+            gameLevel.setMap(levelCache.load(key, pack.getLastModified(), () -> pack.load(levelName)));
+            return;
+        }
+
         //check map exist or not
         File map = new File(mapDirectory + "/" + levelName);
         if (map.exists())
-            gameLevel.loadMap(mapDirectory + "/" + levelName);
+            gameLevel.setMap(levelCache.load(map.getPath()));
         else throw new FileNotFoundException();
     }
 
     /**
-     * Starts the timer, which updates {@link #curGameLevelExistedDuration} every second.
-     * <p>
-     * Hint: {@link java.util.Timer#scheduleAtFixedRate(TimerTask, long, long)} and
-     * {@link javafx.application.Platform#runLater(Runnable)} are required
+     * Parses a level from the current map directory or level pack without making it the current level or caching
+     * it, e.g. to draw a preview. Safe to call from any thread.
+     *
+     * @param levelName The level name
+     * @return A new map of the level
+     * @throws InvalidMapException   if the map was invalid
+     * @throws FileNotFoundException if there is no level with that name
      */
-    public void startLevelTimer() {
-        //TODO
-
-        curGameLevelExistedDurationProperty().set(0);
+    public Map readLevel(String levelName) throws InvalidMapException, FileNotFoundException {
+        LevelPack pack = levelPack;
+        if (pack != null)
+            return pack.load(levelName);
+        return GameLevel.readMap(mapDirectory + "/" + levelName);
+    }
 
-        t.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                Platform.runLater(() -> curGameLevelExistedDuration.set(curGameLevelExistedDuration.get() + 1));
-            }
-        }, 1000, 1000);
+    /**
+     * Writes the replay of the current level to a new file in the given directory, named after the level and the
+     * current time, e.g. once the level is won.
+     *
+     * @param directory The directory to write to, which is created if it does not exist
+     * @return The replay file
+     * @throws IOException if the file could not be written
+     */
+    public Path saveReplay(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        String level = curLevelName == null ? "level" : curLevelName.replaceAll("[^A-Za-z0-9._-]", "_");
+        String time = LocalDateTime.now().format(REPLAY_TIME_FORMAT);
+        Path file = directory.resolve(level + "-" + time + REPLAY_EXTENSION);
+        gameLevel.getReplay().write(file);
+        return file;
+    }
 
+    /**
+     * Starts the level timer from zero. The timer derives the elapsed time from {@link System#nanoTime()} when
+     * asked, see {@link #getLevelTimer()}, so nothing runs in the background.
+     */
+    public void startLevelTimer() {
+        levelTimer.start();
     }
 
     /**
-     * Cancels the existing timer and assigns it to a new instance
+     * Stops the level timer and sets it back to zero
      */
     public void resetLevelTimer() {
-        t.cancel();
-        t = new Timer(true);
+        levelTimer.reset();
+    }
+
+    /**
+     * Stops the level timer while keeping the elapsed time, e.g. while a popup is shown or once the level is won
+     */
+    public void pauseLevelTimer() {
+        levelTimer.pause();
+    }
+
+    public void resumeLevelTimer() {
+        levelTimer.resume();
+    }
+
+    public LevelTimer getLevelTimer() {
+        return levelTimer;
     }
 
     /**
      * Increment the number of restarts the user has performed on the current GameLevel
      */
     public void incrementNumRestarts() {
-        curGameLevelNumRestarts.set(curGameLevelNumRestarts.get() + 1);
+        setNumRestarts(curGameLevelNumRestarts + 1);
     }
 
     /**
      * Reset the number of restarts the user has performed on the current GameLevel
      */
     public void resetNumRestarts() {
-        curGameLevelNumRestarts.set(0);
+        setNumRestarts(0);
+    }
+
+    private void setNumRestarts(int numRestarts) {
+        curGameLevelNumRestarts = numRestarts;
+        for (Listener listener : listeners) {
+            listener.numRestartsChanged(numRestarts);
+        }
     }
 
     /**
-     * @return The name of the level which appears immediately after the current level name inside {@link #levelNames}.
+     * Must be called while holding the lock on the level names, so listeners see changes in order
+     */
+    private void fireLevelNamesChanged() {
+        List<String> names = getLevelNames();
+        for (Listener listener : listeners) {
+            listener.levelNamesChanged(names);
+        }
+    }
+
+    /**
+     * @return The name of the level which appears immediately after the current level name inside {@link #levelNames},
+     * or inside {@link #getLevelNamesByDifficulty()} when sorting by difficulty.
      * If the current level is the last level, this function returns null. You may assume that the current level
      * name is always valid.
      */
     public String getNextLevelName() {
         //TODO
 
-        int current = levelNames.indexOf(currentLevelNameProperty().getValue());
+        synchronized (levelNames) {
+            List<String> names = sortByDifficulty ? sortedByDifficulty() : levelNames;
+            int current = names.indexOf(curLevelName);
 
-        if (current < levelNames.size() - 1)
-            return levelNames.get(current + 1);
-        else return null;//NOTE: You may also change this line
+            if (current < names.size() - 1)
+                return names.get(current + 1);
+            else return null;//NOTE: You may also change this line
+        }
     }
 
     public void removeLevel(String name) {
-        levelNames.remove(name);
+        synchronized (levelNames) {
+            if (levelNames.remove(name)) {
+                levelNamesByDifficulty = null;
+                fireLevelNamesChanged();
+            }
+        }
     }
 
     public String getMapDirectory() {
         return mapDirectory;
     }
 
-    public IntegerProperty curGameLevelExistedDurationProperty() {
-        return curGameLevelExistedDuration;
+    /**
+     * @return The number of seconds the current level has been active since the most recent start/restart
+     */
+    public int getCurGameLevelExistedDuration() {
+        return (int) (levelTimer.getElapsedMillis() / 1000);
     }
 
-    public IntegerProperty curGameLevelNumRestartsProperty() {
+    public int getCurGameLevelNumRestarts() {
         return curGameLevelNumRestarts;
     }
-}
 
+    /**
+     * Listens for changes to the level names and the state of the current level. Every method does nothing by
+     * default, so listeners only override what they need.
+     */
+    public interface Listener {
+        /**
+         * Called when the level names are replaced or a level is removed.
+         *
+         * @param levelNames A copy of the level names after the change
+         */
+        default void levelNamesChanged(List<String> levelNames) {
+        }
+
+        /**
+         * Called on a validation thread when a level has been validated and added to the level names. Calls are
+         * made in the order the changes happen.
+         *
+         * @param index     The position of the level in the level names
+         * @param levelName The level name
+         */
+        default void levelAdded(int index, String levelName) {
+        }
+
+        default void currentLevelNameChanged(String levelName) {
+        }
+
+        default void numRestartsChanged(int numRestarts) {
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package model;
+
+import model.Exceptions.InvalidMapException;
+import model.Map.Map;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A single file holding many levels in the standard XSB collection format: each level is a block of board lines,
+ * and the lines between blocks hold titles and comments.
+ * <p>
+ * The file is memory-mapped and scanned once to build an index of the byte range and name of every level. Levels
+ * are then parsed on demand straight from the mapping, so addressing a level by name or index never touches the
+ * file system.
+ * <p>
+ * A level is named after a {@code Title:} line following its board, or else the last non-board line before it
+ * (with any leading {@code ;} removed), or else "Level n". Duplicate names get their index appended.
+ */
+public class LevelPack implements Closeable {
+    private static final String TITLE = "Title:";
+
+    private final Path path;
+    private final long lastModified;
+    private final FileChannel channel;
+    private final MappedByteBuffer mapping;
+
+    private int[] starts = new int[256];
+    private int[] ends = new int[256];
+    private final List<String> names = new ArrayList<>();
+    private final HashMap<String, Integer> indices = new HashMap<>();
+    private int lastTitled = -1;
+
+    private LevelPack(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        this.lastModified = Files.getLastModifiedTime(path).toMillis();
+        this.channel = channel;
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE)
+            throw new IOException(path + " is too large to be a level pack");
+        this.mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        buildIndex();
+    }
+
+    /**
+     * Maps the pack file and indexes its levels.
+     *
+     * @param path The pack file
+     * @return The opened pack, which should be closed when no longer used
+     * @throws IOException when the file could not be read
+     */
+    public static LevelPack open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new LevelPack(path, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void buildIndex() {
+        int limit = mapping.limit();
+        int levelStart = -1;
+        int levelEnd = -1;
+        String before = null;
+
+        int pos = 0;
+        while (pos <= limit) {
+            int lineEnd = pos;
+            while (lineEnd < limit && mapping.get(lineEnd) != '\n')
+                lineEnd++;
+            int contentEnd = lineEnd > pos && mapping.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+
+            if (isBoardLine(pos, contentEnd)) {
+                if (levelStart < 0)
+                    levelStart = pos;
+                levelEnd = contentEnd;
+            } else {
+                String text = text(pos, contentEnd);
+                if (levelStart >= 0) {
+                    add(levelStart, levelEnd, before);
+                    levelStart = -1;
+                    levelEnd = -1;
+                    before = null;
+                }
+                if (text.startsWith(TITLE)) {
+                    rename(text.substring(TITLE.length()).trim());
+                } else if (!text.isEmpty()) {
+                    before = text.startsWith(";") ? text.substring(1).trim() : text;
+                }
+            }
+
+            if (lineEnd == limit)
+                break;
+            pos = lineEnd + 1;
+        }
+        if (levelStart >= 0)
+            add(levelStart, levelEnd, before);
+
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            if (name == null || name.isEmpty() || indices.containsKey(name))
+                name = (name == null || name.isEmpty() ? "Level" : name) + " " + (i + 1);
+            names.set(i, name);
+            indices.put(name, i);
+        }
+    }
+
+    private void add(int start, int end, String name) {
+        int i = names.size();
+        if (i == starts.length) {
+            starts = Arrays.copyOf(starts, i * 2);
+            ends = Arrays.copyOf(ends, i * 2);
+        }
+        starts[i] = start;
+        ends[i] = end;
+        names.add(name);
+    }
+
+    /**
+     * A Title: line names the level right before it, unless that level already has a title.
+     */
+    private void rename(String title) {
+        int last = names.size() - 1;
+        if (last >= 0 && last != lastTitled) {
+            names.set(last, title);
+            lastTitled = last;
+        }
+    }
+
+    /**
+     * A board line only has XSB board chars, and at least one wall.
+     */
+    private boolean isBoardLine(int start, int end) {
+        boolean wall = false;
+        for (int i = start; i < end; i++) {
+            switch (mapping.get(i)) {
+                case '#':
+                    wall = true;
+                    break;
+                case ' ':
+                case '-':
+                case '_':
+                case '.':
+                case '$':
+                case '*':
+                case '@':
+                case '+':
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return wall;
+    }
+
+    private String text(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = mapping.duplicate();
+        view.position(start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8).trim();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return The last modified time of the pack file when it was opened, in milliseconds
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * @return The names of the levels, in the order they appear in the pack
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    public String getName(int index) {
+        return names.get(index);
+    }
+
+    /**
+     * @param name The level name
+     * @return The index of the level, or -1 if there is no level with that name
+     */
+    public int indexOf(String name) {
+        Integer index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param index The index of the level
+     * @return A new map of the level
+     * @throws InvalidMapException when the level is invalid
+     */
+    public Map load(int index) throws InvalidMapException {
+        return MapParser.forThread().parse(mapping, starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * @param name The level name
+     * @return A new map of the level
+     * @throws InvalidMapException   when the level is invalid
+     * @throws FileNotFoundException when there is no level with that name
+     */
+    public Map load(String name) throws InvalidMapException, FileNotFoundException {
+        int index = indexOf(name);
+        if (index < 0)
+            throw new FileNotFoundException(name + " is not in " + path);
+        return load(index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,64 @@
+package model;
+
+/**
+ * Measures how long a level has been played for, from {@link System#nanoTime()}. Nothing is scheduled: the elapsed
+ * time is derived from the start time whenever it is asked for, so it is exact to the nanosecond and never drifts.
+ * <p>
+ * A timer is stopped at zero until started, and can be paused and resumed any number of times in between.
+ */
+public class LevelTimer {
+    //time accumulated before the current run, and when the current run started. nanoTime() may be negative, so
+    //whether the timer runs is a flag of its own.
+    private long accumulatedNanos;
+    private long runningSince;
+    private boolean running;
+
+    /**
+     * Restarts the timer from zero
+     */
+    public synchronized void start() {
+        accumulatedNanos = 0;
+        runningSince = System.nanoTime();
+        running = true;
+    }
+
+    /**
+     * Stops the timer and sets it back to zero
+     */
+    public synchronized void reset() {
+        accumulatedNanos = 0;
+        running = false;
+    }
+
+    /**
+     * Stops the timer, keeping the elapsed time. Does nothing if it is not running.
+     */
+    public synchronized void pause() {
+        if (!running)
+            return;
+        accumulatedNanos += System.nanoTime() - runningSince;
+        running = false;
+    }
+
+    /**
+     * Continues a paused timer from its elapsed time. Does nothing if it is already running.
+     */
+    public synchronized void resume() {
+        if (running)
+            return;
+        runningSince = System.nanoTime();
+        running = true;
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    public synchronized long getElapsedNanos() {
+        return running ? accumulatedNanos + System.nanoTime() - runningSince : accumulatedNanos;
+    }
+
+    public long getElapsedMillis() {
+        return getElapsedNanos() / 1_000_000;
+    }
+}
@@ -0,0 +1,41 @@
+package model.Map;
+
+/**
+ * Helpers for bitsets stored as plain long arrays, as used by {@link Board} and the search code.
+ */
+public final class Bits {
+
+    private Bits() {
+    }
+
+    /**
+     * @param size The number of bits
+     * @return The number of longs needed to hold that many bits
+     */
+    public static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    public static boolean get(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    public static void clear(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    /**
+     * @return The number of set bits
+     */
+    public static int count(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,426 @@
+package model.Map;
+
+import static model.Map.Bits.clear;
+import static model.Map.Bits.get;
+import static model.Map.Bits.set;
+
+/**
+ * A compact, primitive representation of the world map. Walls and destinations are static bitsets, crates are a
+ * dynamic bitset and the player is a single int index, so moving around the board does not allocate or chase
+ * pointers.
+ * <p>
+ * The board is padded with a ring of walls, i.e. the cell at row r and column c of the map is stored at index
+ * (r + 1) * width + (c + 1). Because of the padding, neighbouring squares can always be addressed by adding a
+ * direction offset to an index without any bounds checks.
+ */
+public class Board {
+    private final int rows;
+    private final int cols;
+    private final int width;
+    private final int size;
+
+    private final long[] walls;
+    private final long[] dests;
+    private final long[] crates;
+    private final int[] offsets;
+
+    private int numDests;
+    private int numCompletedDests;
+    private int numCrates;
+
+    //squares from which a crate can never reach a destination, computed once by computeDeadSquares()
+    private long[] deadSquares;
+    private int numDeadCrates;
+
+    private final Zobrist zobrist;
+    private long crateHash;
+
+    private int player = -1;
+    private boolean lastMovePushed;
+
+    //top-left square of the player's reachable region, or -1 if a push made it stale
+    private int normalizedPlayer = -1;
+    private Reachability reachability;
+
+    /**
+     * Creates a board with the given dimensions, where every square is an empty tile. The padding ring is walled.
+     *
+     * @param rows The number of rows in the map
+     * @param cols The number of columns in the map
+     */
+    public Board(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.width = cols + 2;
+        this.size = (rows + 2) * width;
+
+        int words = Bits.words(size);
+        walls = new long[words];
+        dests = new long[words];
+        crates = new long[words];
+
+        zobrist = new Zobrist(size);
+        offsets = new int[Map.Direction.values().length];
+        for (Map.Direction d : Map.Direction.values()) {
+            offsets[d.ordinal()] = d.getDR() * width + d.getDC();
+        }
+
+        for (int c = 0; c < width; c++) {
+            set(walls, c);
+            set(walls, size - width + c);
+        }
+        for (int r = 1; r <= rows; r++) {
+            set(walls, r * width);
+            set(walls, r * width + width - 1);
+        }
+    }
+
+    /**
+     * Creates a deep copy of another board, sharing nothing with it.
+     *
+     * @param other The board to copy
+     */
+    public Board(Board other) {
+        this.rows = other.rows;
+        this.cols = other.cols;
+        this.width = other.width;
+        this.size = other.size;
+        this.walls = other.walls.clone();
+        this.dests = other.dests.clone();
+        this.crates = other.crates.clone();
+        this.offsets = other.offsets.clone();
+        this.numDests = other.numDests;
+        this.numCrates = other.numCrates;
+        this.numCompletedDests = other.numCompletedDests;
+        this.deadSquares = other.deadSquares;
+        this.numDeadCrates = other.numDeadCrates;
+        this.zobrist = other.zobrist;
+        this.crateHash = other.crateHash;
+        this.player = other.player;
+        this.lastMovePushed = other.lastMovePushed;
+        this.normalizedPlayer = other.normalizedPlayer;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * @return The width of a row in the padded index space, i.e. the offset between vertically adjacent squares
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The number of squares in the padded index space. All indices are in [0, size).
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @param r The row coordinate in the map
+     * @param c The column coordinate in the map
+     * @return The index of the square in the padded index space
+     */
+    public int toIndex(int r, int c) {
+        return (r + 1) * width + (c + 1);
+    }
+
+    /**
+     * @param index An index in the padded index space
+     * @return The row coordinate of the index in the map
+     */
+    public int rowOf(int index) {
+        return index / width - 1;
+    }
+
+    /**
+     * @param index An index in the padded index space
+     * @return The column coordinate of the index in the map
+     */
+    public int colOf(int index) {
+        return index % width - 1;
+    }
+
+    /**
+     * @param d A direction
+     * @return The value to add to an index to reach its neighbour in that direction
+     */
+    public int offset(Map.Direction d) {
+        return offsets[d.ordinal()];
+    }
+
+    public boolean isWall(int index) {
+        return get(walls, index);
+    }
+
+    public boolean isDest(int index) {
+        return get(dests, index);
+    }
+
+    public boolean hasCrate(int index) {
+        return get(crates, index);
+    }
+
+    public int getPlayer() {
+        return player;
+    }
+
+    public void setWall(int index) {
+        set(walls, index);
+    }
+
+    public void setDest(int index) {
+        if (!get(dests, index)) {
+            set(dests, index);
+            numDests++;
+            if (get(crates, index))
+                numCompletedDests++;
+        }
+    }
+
+    public void setCrate(int index) {
+        if (!get(crates, index)) {
+            set(crates, index);
+            numCrates++;
+            crateHash ^= zobrist.crateKey(index);
+            if (get(dests, index))
+                numCompletedDests++;
+            if (isDeadSquare(index))
+                numDeadCrates++;
+            normalizedPlayer = -1;
+        }
+    }
+
+    public void setPlayer(int index) {
+        player = index;
+        normalizedPlayer = -1;
+    }
+
+    public int getNumDests() {
+        return numDests;
+    }
+
+    public int getNumCrates() {
+        return numCrates;
+    }
+
+    /**
+     * @return Whether there are more crates than destinations. The spare crates never need to reach a destination,
+     * so a crate stuck off one does not make the level unwinnable.
+     */
+    public boolean hasSpareCrates() {
+        return numCrates > numDests;
+    }
+
+    /**
+     * @return The number of destinations with a crate on them, which is updated on every push
+     */
+    public int getNumCompletedDests() {
+        return numCompletedDests;
+    }
+
+    /**
+     * @return Whether every destination has a crate on it
+     */
+    public boolean isSolved() {
+        return numCompletedDests == numDests;
+    }
+
+    /**
+     * Computes the dead squares of the board: the squares from which a crate can never be pushed onto any
+     * destination, even if there were no other crates. Crates are pulled backwards from every destination; a crate
+     * can be pulled from square s to s - offset when neither s - offset nor s - 2 * offset is a wall. Every floor
+     * square not reached this way is dead.
+     * <p>
+     * This only depends on the walls and destinations, so it is done once after the board is set up.
+     */
+    public void computeDeadSquares() {
+        long[] alive = new long[walls.length];
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < size; i++) {
+            if (get(dests, i)) {
+                set(alive, i);
+                queue[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int square = queue[head++];
+            for (int offset : offsets) {
+                int to = square - offset;
+                if (get(walls, to) || get(walls, to - offset) || get(alive, to))
+                    continue;
+                set(alive, to);
+                queue[tail++] = to;
+            }
+        }
+
+        deadSquares = new long[walls.length];
+        numDeadCrates = 0;
+        for (int i = 0; i < size; i++) {
+            if (!get(walls, i) && !get(alive, i)) {
+                set(deadSquares, i);
+                if (get(crates, i))
+                    numDeadCrates++;
+            }
+        }
+    }
+
+    /**
+     * @return Whether a crate on the square can never reach a destination. Always false before
+     * {@link #computeDeadSquares()} has been called.
+     */
+    public boolean isDeadSquare(int index) {
+        return deadSquares != null && get(deadSquares, index);
+    }
+
+    /**
+     * @return The number of crates currently on dead squares, which is updated on every push
+     */
+    public int getNumDeadCrates() {
+        return numDeadCrates;
+    }
+
+    public Zobrist getZobrist() {
+        return zobrist;
+    }
+
+    /**
+     * @return The XOR of the Zobrist keys of all crates, which is updated incrementally on every push
+     */
+    public long getCrateHash() {
+        return crateHash;
+    }
+
+    /**
+     * @return The Zobrist hash of the position: the crates and the region the player can reach. Positions which
+     * only differ by walking have the same hash.
+     */
+    public long getHash() {
+        return crateHash ^ zobrist.playerKey(getNormalizedPlayer());
+    }
+
+    /**
+     * Walking never changes the reachable region, so it is only recomputed after a push.
+     *
+     * @return The top-left square of the region the player can reach without pushing
+     */
+    public int getNormalizedPlayer() {
+        if (normalizedPlayer < 0)
+            computeReachable();
+        return normalizedPlayer;
+    }
+
+    /**
+     * Flood fills the region the player can currently reach without pushing. The returned instance is owned by
+     * this board and is overwritten by the next computation.
+     *
+     * @return The reachable region
+     */
+    public Reachability computeReachable() {
+        if (reachability == null)
+            reachability = new Reachability(this);
+        normalizedPlayer = reachability.compute(crates, player);
+        return reachability;
+    }
+
+    /**
+     * @return The region of the last {@link #computeReachable()}, which is computed now if there was none
+     */
+    public Reachability getReachability() {
+        return reachability == null ? computeReachable() : reachability;
+    }
+
+    /**
+     * @return Whether the last successful call to {@link #movePlayer(Map.Direction)} pushed a crate
+     */
+    public boolean wasLastMovePush() {
+        return lastMovePushed;
+    }
+
+    /**
+     * Attempts to move the player in the specified direction, with the same rules as
+     * {@link Map#movePlayer(Map.Direction)}: the player walks onto free squares and may push a single crate onto a
+     * free square behind it.
+     *
+     * @param d The direction the player wants to move
+     * @return Whether the move was successful
+     */
+    public boolean movePlayer(Map.Direction d) {
+        int offset = offsets[d.ordinal()];
+        int next = player + offset;
+
+        if (get(walls, next))
+            return false;
+
+        if (get(crates, next)) {
+            int behind = next + offset;
+            if (get(walls, behind) || get(crates, behind))
+                return false;
+            moveCrate(next, behind);
+            lastMovePushed = true;
+        } else {
+            lastMovePushed = false;
+        }
+
+        player = next;
+        return true;
+    }
+
+    /**
+     * Reverts a move previously made with {@link #movePlayer(Map.Direction)}: the player steps back, pulling the
+     * crate along if the move was a push.
+     *
+     * @param d      The direction of the move being reverted
+     * @param pushed Whether the move being reverted pushed a crate
+     */
+    public void undoMove(Map.Direction d, boolean pushed) {
+        int offset = offsets[d.ordinal()];
+        if (pushed)
+            moveCrate(player + offset, player);
+        player -= offset;
+    }
+
+    /**
+     * Moves a crate and updates the hash and the counters which depend on crate positions.
+     */
+    private void moveCrate(int from, int to) {
+        clear(crates, from);
+        set(crates, to);
+        crateHash ^= zobrist.crateKey(from) ^ zobrist.crateKey(to);
+        numCompletedDests += (get(dests, to) ? 1 : 0) - (get(dests, from) ? 1 : 0);
+        if (deadSquares != null) {
+            numDeadCrates += (get(deadSquares, to) ? 1 : 0) - (get(deadSquares, from) ? 1 : 0);
+        }
+        normalizedPlayer = -1;
+    }
+
+    /**
+     * @return A copy of the crate bitset, indexed by position in the padded index space
+     */
+    public long[] copyCrates() {
+        return crates.clone();
+    }
+
+    /**
+     * @return A copy of the wall bitset, indexed by position in the padded index space
+     */
+    public long[] copyWalls() {
+        return walls.clone();
+    }
+
+    /**
+     * @return A copy of the destination bitset, indexed by position in the padded index space
+     */
+    public long[] copyDests() {
+        return dests.clone();
+    }
+}
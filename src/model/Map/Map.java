@@ -8,20 +8,93 @@ import model.Map.Occupant.Player;
 import model.Map.Occupiable.DestTile;
 import model.Map.Occupiable.Occupiable;
 import model.Map.Occupiable.Tile;
-import viewmodel.LevelEditorCanvas;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
- * A class holding a the 2D array of cells, representing the world map
+ * A class holding a the 2D array of cells, representing the world map. The cells are kept in sync with a compact
+ * {@link Board}, which is the authoritative state used to decide whether moves are legal.
  */
 public class Map {
     private Cell[][] cells;
+    private Board board;
     private ArrayList<DestTile> destTiles = new ArrayList<>();
     private ArrayList<Crate> crates = new ArrayList<>();
+    private final ArrayList<DestListener> destListeners = new ArrayList<>();
+
+    //board indices of the cells changed since clearChangedCells() was last called, without duplicates
+    private int[] changedCells = new int[16];
+    private int numChangedCells;
+    private long[] changedBits;
 
     private Player player;
 
+    public Map() {
+    }
+
+    /**
+     * Creates an independent copy of another map in its current position. The board is copied directly, so unlike
+     * {@link #initialize(int, int, char[][])} nothing needs to be parsed or analysed again.
+     *
+     * @param other The map to copy
+     */
+    public Map(Map other) {
+        this(new Board(other.board));
+    }
+
+    /**
+     * Creates a map whose cells, crates and destinations are built from the board. The board must be fully set up,
+     * including {@link Board#computeDeadSquares()}, and is used by the map from now on.
+     *
+     * @param board The board holding the state of the map
+     */
+    public Map(Board board) {
+        this.board = board;
+        buildCells();
+    }
+
+    /**
+     * Builds the cells, crates and destinations matching the board.
+     */
+    private void buildCells() {
+        int rows = board.getRows();
+        int cols = board.getCols();
+        cells = new Cell[rows][cols];
+        destTiles = new ArrayList<>();
+        crates = new ArrayList<>();
+        player = null;
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int index = board.toIndex(r, c);
+                if (board.isWall(index)) {
+                    cells[r][c] = new Wall();
+                    continue;
+                }
+
+                Tile t;
+                if (board.isDest(index)) {
+                    DestTile d = new DestTile();
+                    destTiles.add(d);
+                    t = d;
+                } else {
+                    t = new Tile();
+                }
+                cells[r][c] = t;
+
+                if (board.hasCrate(index)) {
+                    Crate crate = new Crate(r, c);
+                    crates.add(crate);
+                    t.setOccupant(crate);
+                } else if (board.getPlayer() == index) {
+                    player = new Player(r, c);
+                    t.setOccupant(player);
+                }
+            }
+        }
+    }
+
     /**
      * This function instantiates and initializes cells, destTiles, crates to the correct map elements (e.g. the # char
      * means a wall, @ the player, etc).
@@ -32,71 +105,48 @@ public class Map {
      * @throws InvalidMapException Throw the correct exception when necessary. There should only be 1 player.
      */
     public void initialize(int rows, int cols, char[][] rep) throws InvalidMapException {
-        cells = new Cell[rows][cols];
-        destTiles = new ArrayList<>();
-        crates = new ArrayList<>();
-        player = null;
-
+        Board board = new Board(rows, cols);
         for (int r = 0; r < rows; r++) {
             for (int c = 0; c < cols; c++) {
-                LevelEditorCanvas.Brush b = LevelEditorCanvas.Brush.fromChar(rep[r][c]);
-                if (b == null)
-                    throw new UnknownElementException("Unknown char: " + rep[r][c]);
-
-                switch (b) {
-                    case TILE:
-                        cells[r][c] = new Tile();
-                        break;
-                    case PLAYER_ON_TILE:
-                        if (player == null) {
-                            player = new Player(r, c);
-                            Tile t = new Tile();
-                            cells[r][c] = t;
-                            t.setOccupant(player);
-                        } else {
-                            throw new InvalidNumberOfPlayersException(">1 players found!");
-                        }
+                int index = board.toIndex(r, c);
+                switch (rep[r][c]) {
+                    case '.':
                         break;
-                    case PLAYER_ON_DEST:
-                        if (player == null) {
-                            player = new Player(r, c);
-                            DestTile t = new DestTile();
-                            destTiles.add(t);
-                            cells[r][c] = t;
-                            t.setOccupant(player);
-                        } else {
+                    case '@':
+                    case '&':
+                        if (board.getPlayer() >= 0)
                             throw new InvalidNumberOfPlayersException(">1 players found!");
-                        }
+                        board.setPlayer(index);
+                        if (rep[r][c] == '&')
+                            board.setDest(index);
                         break;
-                    case CRATE_ON_TILE:
-                        Crate crate = new Crate(r, c);
-                        crates.add(crate);
-                        Tile t = new Tile();
-                        cells[r][c] = t;
-                        t.setOccupant(crate);
+                    case 'c':
+                        board.setCrate(index);
                         break;
-                    case CRATE_ON_DEST:
-                        Crate crate2 = new Crate(r, c);
-                        crates.add(crate2);
-                        DestTile t2 = new DestTile();
-                        destTiles.add(t2);
-                        cells[r][c] = t2;
-                        t2.setOccupant(crate2);
+                    case '$':
+                        board.setCrate(index);
+                        board.setDest(index);
                         break;
-                    case WALL:
-                        cells[r][c] = new Wall();
+                    case '#':
+                        board.setWall(index);
                         break;
-                    case DEST:
-                        DestTile d = new DestTile();
-                        cells[r][c] = d;
-                        destTiles.add(d);
+                    case 'C':
+                        board.setDest(index);
                         break;
+                    default:
+                        throw new UnknownElementException("Unknown char: " + rep[r][c]);
                 }
             }
         }
 
-        if (null == player)
+        if (board.getPlayer() < 0)
             throw new InvalidNumberOfPlayersException("0 players found!");
+
+        board.computeDeadSquares();
+        this.board = board;
+        changedBits = null;
+        numChangedCells = 0;
+        buildCells();
     }
 
     public ArrayList<DestTile> getDestTiles() {
@@ -111,91 +161,192 @@ public class Map {
         return cells;
     }
 
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * @return Whether every destination has a crate on it. The count of completed destinations is kept up to date
+     * on every push, so this is O(1).
+     */
+    public boolean isSolved() {
+        return board.isSolved();
+    }
+
+    public int getNumCompletedDests() {
+        return board.getNumCompletedDests();
+    }
+
+    /**
+     * @param listener Notified whenever a push changes the number of destinations with a crate on them
+     */
+    public void addDestListener(DestListener listener) {
+        destListeners.add(listener);
+    }
+
+    public void removeDestListener(DestListener listener) {
+        destListeners.remove(listener);
+    }
+
+    /**
+     * @return The Zobrist hash of the current position, see {@link Board#getHash()}
+     */
+    public long getHash() {
+        return board.getHash();
+    }
+
+    /**
+     * Computes the squares the player can reach without pushing a crate. The region can then be queried with
+     * {@link #isReachable(int, int)} or {@link #getReachability()} until the next call.
+     *
+     * @return The board index of the top-left reachable square, which identifies the region, see
+     * {@link Board#getNormalizedPlayer()}
+     */
+    public int computeReachable() {
+        return board.computeReachable().getNormalized();
+    }
+
+    /**
+     * @return The region of the last {@link #computeReachable()}, e.g. to walk the player to a reached square
+     */
+    public Reachability getReachability() {
+        return board.getReachability();
+    }
+
+    /**
+     * @param r The row of a cell
+     * @param c The column of a cell
+     * @return Whether the cell was reachable by the player at the last {@link #computeReachable()}
+     */
+    public boolean isReachable(int r, int c) {
+        return getReachability().isReachable(board.toIndex(r, c));
+    }
+
     /**
      * Attempts to move the player in the specified direction. Note that the player only has the strength to push
      * one crate. It cannot push 2 or more crates simultaneously.
+     * <p>
+     * The move is validated and applied on the {@link Board}; the cells are then updated to match.
      *
      * @param d The direction the player wants to move
      * @return Whether the move was successful
      */
     public boolean movePlayer(Direction d) {
+        if (!board.movePlayer(d))
+            return false;
+
         int curR = player.getR();
         int curC = player.getC();
+        int newR = curR + d.getDR();
+        int newC = curC + d.getDC();
 
-        int newR = curR;
-        int newC = curC;
-
-        switch (d) {
-            case UP:
-                newR--;
-                break;
-            case DOWN:
-                newR++;
-                break;
-            case LEFT:
-                newC--;
-                break;
-            case RIGHT:
-                newC++;
-                break;
-        }
+        if (board.wasLastMovePush())
+            moveCrate((Crate) ((Occupiable) cells[newR][newC]).getOccupant().get(), d);
 
-        if (isValid(newR, newC)) {
-            if (isOccupiableAndNotOccupiedWithCrate(newR, newC)) {
-                ((Occupiable) cells[curR][curC]).removeOccupant();
-                ((Occupiable) cells[newR][newC]).setOccupant(player);
-                player.setPos(newR, newC);
-                return true;
-            } else if (cells[newR][newC] instanceof Occupiable) {
-                if (moveCrate((Crate) ((Occupiable) cells[newR][newC]).getOccupant().get(), d)) {
-                    ((Occupiable) cells[curR][curC]).removeOccupant();
-                    ((Occupiable) cells[newR][newC]).setOccupant(player);
-                    player.setPos(newR, newC);
-                    return true;
-                }
-            }
-        }
-        return false;
+        ((Occupiable) cells[curR][curC]).removeOccupant();
+        ((Occupiable) cells[newR][newC]).setOccupant(player);
+        player.setPos(newR, newC);
+        markChanged(curR, curC);
+        markChanged(newR, newC);
+        return true;
     }
 
     /**
-     * Attempts to move the crate into the specified direction by 1 cell. Will only succeed if the destination
-     * implements the occupiable interface and is not currently occupied.
+     * Reverts a move previously made with {@link #movePlayer(Direction)}: the player steps back, pulling the crate
+     * along if the move was a push.
+     *
+     * @param d      The direction of the move being reverted
+     * @param pushed Whether the move being reverted pushed a crate
+     */
+    public void undoMove(Direction d, boolean pushed) {
+        board.undoMove(d, pushed);
+
+        int curR = player.getR();
+        int curC = player.getC();
+        int prevR = curR - d.getDR();
+        int prevC = curC - d.getDC();
+
+        ((Occupiable) cells[curR][curC]).removeOccupant();
+        ((Occupiable) cells[prevR][prevC]).setOccupant(player);
+        player.setPos(prevR, prevC);
+        markChanged(curR, curC);
+        markChanged(prevR, prevC);
+
+        if (pushed)
+            moveCrate((Crate) ((Occupiable) cells[curR + d.getDR()][curC + d.getDC()]).getOccupant().get(),
+                    d.opposite());
+    }
+
+    /**
+     * Moves the crate in the cells by 1 cell into the specified direction. The push has already been validated
+     * and applied on the {@link Board} by {@link #movePlayer(Direction)} or {@link #undoMove(Direction, boolean)}.
      *
      * @param c The crate to be moved
-     * @param d The desired direction to move the crate in
-     * @return Whether or not the move was successful
+     * @param d The direction to move the crate in
      */
-    private boolean moveCrate(Crate c, Direction d) {
+    private void moveCrate(Crate c, Direction d) {
         int curR = c.getR();
         int curC = c.getC();
+        int newR = curR + d.getDR();
+        int newC = curC + d.getDC();
+
+        ((Occupiable) cells[curR][curC]).removeOccupant();
+        ((Occupiable) cells[newR][newC]).setOccupant(c);
+        c.setPos(newR, newC);
+        markChanged(curR, curC);
+        markChanged(newR, newC);
 
-        int newR = curR;
-        int newC = curC;
-
-        switch (d) {
-            case UP:
-                newR--;
-                break;
-            case DOWN:
-                newR++;
-                break;
-            case LEFT:
-                newC--;
-                break;
-            case RIGHT:
-                newC++;
-                break;
+        if (board.isDest(board.toIndex(curR, curC)) != board.isDest(board.toIndex(newR, newC))) {
+            for (DestListener listener : destListeners) {
+                listener.completedDestsChanged(board.getNumCompletedDests(), board.getNumDests());
+            }
         }
+    }
 
-        if (isOccupiableAndNotOccupiedWithCrate(newR, newC)) {
-            ((Occupiable) cells[curR][curC]).removeOccupant();
-            ((Occupiable) cells[newR][newC]).setOccupant(c);
-            c.setPos(newR, newC);
-            return true;
-        } else {
-            return false;
+    private void markChanged(int r, int c) {
+        int index = board.toIndex(r, c);
+        if (changedBits == null)
+            changedBits = new long[Bits.words(board.getSize())];
+        if (Bits.get(changedBits, index))
+            return;
+        Bits.set(changedBits, index);
+        if (numChangedCells == changedCells.length)
+            changedCells = Arrays.copyOf(changedCells, numChangedCells * 2);
+        changedCells[numChangedCells++] = index;
+    }
+
+    /**
+     * @return The number of cells whose contents changed since {@link #clearChangedCells()} was last called. A
+     * single move changes at most three cells.
+     */
+    public int getNumChangedCells() {
+        return numChangedCells;
+    }
+
+    /**
+     * @param i The index of the changed cell, in [0, {@link #getNumChangedCells()})
+     * @return The row coordinate of the changed cell
+     */
+    public int getChangedRow(int i) {
+        return board.rowOf(changedCells[i]);
+    }
+
+    /**
+     * @param i The index of the changed cell, in [0, {@link #getNumChangedCells()})
+     * @return The column coordinate of the changed cell
+     */
+    public int getChangedCol(int i) {
+        return board.colOf(changedCells[i]);
+    }
+
+    /**
+     * Forgets the changed cells, e.g. after they have been rendered
+     */
+    public void clearChangedCells() {
+        for (int i = 0; i < numChangedCells; i++) {
+            Bits.clear(changedBits, changedCells[i]);
         }
+        numChangedCells = 0;
     }
 
     private boolean isValid(int r, int c) {
@@ -213,12 +364,57 @@ public class Map {
             return false;
         }
 
-        return cells[r][c] instanceof Occupiable &&
-                (!((Occupiable) cells[r][c]).getOccupant().isPresent()
-                        || !(((Occupiable) cells[r][c]).getOccupant().get() instanceof Crate));
+        int index = board.toIndex(r, c);
+        return !board.isWall(index) && !board.hasCrate(index);
+    }
+
+    /**
+     * Listens for changes in the number of destinations which have a crate on them
+     */
+    public interface DestListener {
+        /**
+         * @param completed The number of destinations with a crate on them after the push
+         * @param total     The total number of destinations
+         */
+        void completedDestsChanged(int completed, int total);
     }
 
     public enum Direction {
-        UP, DOWN, LEFT, RIGHT
+        UP(-1, 0), DOWN(1, 0), LEFT(0, -1), RIGHT(0, 1);
+
+        private final int dr;
+        private final int dc;
+
+        Direction(int dr, int dc) {
+            this.dr = dr;
+            this.dc = dc;
+        }
+
+        /**
+         * @return The change in row coordinate when moving in this direction
+         */
+        public int getDR() {
+            return dr;
+        }
+
+        /**
+         * @return The change in column coordinate when moving in this direction
+         */
+        public int getDC() {
+            return dc;
+        }
+
+        public Direction opposite() {
+            switch (this) {
+                case UP:
+                    return DOWN;
+                case DOWN:
+                    return UP;
+                case LEFT:
+                    return RIGHT;
+                default:
+                    return LEFT;
+            }
+        }
     }
 }
@@ -0,0 +1,136 @@
+package model.Map;
+
+/**
+ * Computes the region the player can reach without pushing a crate, by a breadth-first flood fill over a
+ * {@link Board}'s padded index space.
+ * <p>
+ * The buffers are allocated once per board size and reused by every computation: reached squares are stamped with
+ * a generation number which is incremented per computation, so nothing needs clearing in between. A computation
+ * therefore only costs the size of the reached region, not the size of the board, and never allocates.
+ * <p>
+ * The region of the last computation can be queried until the next one. An instance is not thread-safe; searches
+ * running in parallel each need their own.
+ */
+public class Reachability {
+    //stamp of walls, which is never reached by a generation, so one comparison rejects walls and reached squares
+    private static final int WALL = Integer.MAX_VALUE;
+
+    private final int width;
+
+    //the reached squares in the order they were reached, the generation they were last reached in, and the square
+    //each was reached from
+    private final int[] queue;
+    private final int[] stamp;
+    private final int[] previous;
+    private int generation;
+    private int numReached;
+    private int normalized = -1;
+
+    /**
+     * @param board The board whose walls and dimensions the computations use. Only its walls are read, so the
+     *              instance stays valid as crates and the player move.
+     */
+    public Reachability(Board board) {
+        this.width = board.getWidth();
+        this.queue = new int[board.getSize()];
+        this.stamp = new int[board.getSize()];
+        this.previous = new int[board.getSize()];
+        for (int i = 0; i < stamp.length; i++) {
+            if (board.isWall(i))
+                stamp[i] = WALL;
+        }
+    }
+
+    /**
+     * Flood fills the region reachable from a square without pushing.
+     *
+     * @param crates The crate bitset, indexed like the board
+     * @param from   The square the player is on
+     * @return The normalized player position, i.e. the top-left square of the region, which is the same for every
+     * square in it
+     */
+    public int compute(long[] crates, int from) {
+        if (generation == WALL - 1) {
+            //stamps from earlier generations could be mistaken for the current one after wrapping around
+            for (int i = 0; i < stamp.length; i++) {
+                if (stamp[i] != WALL)
+                    stamp[i] = 0;
+            }
+            generation = 0;
+        }
+        int generation = ++this.generation;
+        int[] queue = this.queue;
+        int[] stamp = this.stamp;
+        int[] previous = this.previous;
+        int width = this.width;
+
+        int head = 0;
+        int tail = 0;
+        int min = from;
+        queue[tail++] = from;
+        stamp[from] = generation;
+        previous[from] = -1;
+        while (head < tail) {
+            int square = queue[head++];
+            if (square < min)
+                min = square;
+            //the board is padded with walls, so every neighbour of a reached square is in bounds
+            tail = visit(crates, square, square - width, generation, tail);
+            tail = visit(crates, square, square + width, generation, tail);
+            tail = visit(crates, square, square - 1, generation, tail);
+            tail = visit(crates, square, square + 1, generation, tail);
+        }
+        numReached = tail;
+        normalized = min;
+        return min;
+    }
+
+    private int visit(long[] crates, int square, int next, int generation, int tail) {
+        if (stamp[next] >= generation || Bits.get(crates, next))
+            return tail;
+        stamp[next] = generation;
+        previous[next] = square;
+        queue[tail] = next;
+        return tail + 1;
+    }
+
+    /**
+     * @return The top-left square of the region of the last computation, or -1 if nothing was computed yet
+     */
+    public int getNormalized() {
+        return normalized;
+    }
+
+    /**
+     * @param index A square on the board
+     * @return Whether the square was reached by the last computation
+     */
+    public boolean isReachable(int index) {
+        return numReached > 0 && stamp[index] == generation;
+    }
+
+    /**
+     * @return The number of squares reached by the last computation
+     */
+    public int getNumReached() {
+        return numReached;
+    }
+
+    /**
+     * @param i A number in [0, {@link #getNumReached()})
+     * @return The i-th reached square, in breadth-first order
+     */
+    public int getReached(int i) {
+        return queue[i];
+    }
+
+    /**
+     * Following the previous squares from a reached square leads back to the start along a shortest walk.
+     *
+     * @param index A square reached by the last computation
+     * @return The square it was first reached from, or -1 for the start
+     */
+    public int getPrevious(int index) {
+        return previous[index];
+    }
+}
@@ -0,0 +1,37 @@
+package model.Map;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing of board positions. A position is hashed by XORing together the key of every
+ * square holding a crate and the key of the normalized player square, so moving a crate only needs two XORs.
+ * <p>
+ * The keys are generated from a fixed seed, so the same board size always produces the same hashes.
+ */
+public final class Zobrist {
+    private static final long SEED = 0x5EED_50C0_BA11L;
+
+    private final long[] crateKeys;
+    private final long[] playerKeys;
+
+    /**
+     * @param size The number of squares in the padded index space of the board
+     */
+    public Zobrist(int size) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        crateKeys = new long[size];
+        playerKeys = new long[size];
+        for (int i = 0; i < size; i++) {
+            crateKeys[i] = random.nextLong();
+            playerKeys[i] = random.nextLong();
+        }
+    }
+
+    public long crateKey(int index) {
+        return crateKeys[index];
+    }
+
+    public long playerKey(int index) {
+        return playerKeys[index];
+    }
+}
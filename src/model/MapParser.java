@@ -0,0 +1,398 @@
+package model;
+
+import model.Exceptions.InvalidMapException;
+import model.Exceptions.InvalidNumberOfPlayersException;
+import model.Exceptions.MalformedMapException;
+import model.Exceptions.UnknownElementException;
+import model.Map.Board;
+import model.Map.Map;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Parses map files straight from bytes into a {@link Board}, without going through Strings or char arrays.
+ * <p>
+ * Two formats are understood:
+ * <ul>
+ * <li>The native format: the number of rows and the number of columns, followed by one line per row using
+ * {@code # . C c $ @ &} for wall, tile, destination, crate, crate on destination, player and player on
+ * destination. Every row must have exactly the given number of columns.</li>
+ * <li>The standard XSB format: {@code # (space) - _ . $ * @ +} for wall, floor, floor, floor, goal, box,
+ * box on goal, player and player on goal. Rows may be ragged and are padded with floor. Lines starting with
+ * {@code ;} before the level are skipped, and the level ends at the first line which is not part of a board.</li>
+ * </ul>
+ * Errors report the 1-based line and column where they were found.
+ * <p>
+ * A parser reuses its read buffer between files, so it is not thread-safe.
+ */
+public class MapParser {
+    private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+    //the largest board, in squares, which is allocated. Ragged XSB rows are padded, so the board can be far larger
+    //than the file.
+    private static final int MAX_SQUARES = 1 << 20;
+    private static final ThreadLocal<MapParser> PARSERS = ThreadLocal.withInitial(MapParser::new);
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int[] lineStarts = new int[64];
+    private int[] lineEnds = new int[64];
+
+    private byte[] bytes;
+    private int pos;
+    private int end;
+    private int line;
+    private int lineStart;
+
+    /**
+     * @return The parser of the current thread
+     */
+    public static MapParser forThread() {
+        return PARSERS.get();
+    }
+
+    /**
+     * @param path The map file
+     * @return The parsed map
+     * @throws InvalidMapException   when the map is invalid
+     * @throws FileNotFoundException when the file does not exist
+     * @throws IOException           when the file could not be read
+     */
+    public Map parse(Path path) throws InvalidMapException, IOException {
+        int length;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8)
+                throw new IOException(path + " is too large to be a map");
+            if (size > buffer.length)
+                buffer = new byte[(int) size];
+            ByteBuffer target = ByteBuffer.wrap(buffer, 0, (int) size);
+            while (target.hasRemaining() && channel.read(target) >= 0) {
+                //keep reading until the whole file is in the buffer
+            }
+            length = target.position();
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path.toString());
+        }
+        return parse(buffer, 0, length);
+    }
+
+    /**
+     * Parses a map held in part of a buffer, e.g. a level in a memory-mapped pack. Line numbers in errors are
+     * relative to the start of the map.
+     *
+     * @param source The buffer holding the map text. Its position and limit are not changed.
+     * @param offset The index of the first byte of the map
+     * @param length The number of bytes of the map
+     * @return The parsed map
+     * @throws InvalidMapException when the map is invalid
+     */
+    public Map parse(ByteBuffer source, int offset, int length) throws InvalidMapException {
+        if (length > buffer.length)
+            buffer = new byte[length];
+        ByteBuffer view = source.duplicate();
+        view.position(offset);
+        view.get(buffer, 0, length);
+        return parse(buffer, 0, length);
+    }
+
+    /**
+     * @param bytes  The bytes holding the map text
+     * @param offset The index of the first byte of the map
+     * @param length The number of bytes of the map
+     * @return The parsed map
+     * @throws InvalidMapException when the map is invalid
+     */
+    public Map parse(byte[] bytes, int offset, int length) throws InvalidMapException {
+        this.bytes = bytes;
+        this.pos = offset;
+        this.end = offset + length;
+        this.line = 1;
+        this.lineStart = offset;
+        try {
+            skipBlankLines();
+            Board board = isDigit(peek()) ? parseNative() : parseXsb();
+            board.computeDeadSquares();
+            return new Map(board);
+        } finally {
+            this.bytes = null;
+        }
+    }
+
+    private Board parseNative() throws InvalidMapException {
+        int rows = readInt("number of rows");
+        int cols = readInt("number of columns");
+        skipRestOfLine();
+        //every row takes at least its columns in bytes, so a header larger than the file is rejected before the
+        //board is allocated
+        if ((long) rows * cols > end - pos)
+            throw malformed("expected " + rows + " rows of " + cols + " columns, but only " + (end - pos)
+                    + " bytes are left");
+        checkSize(rows, cols);
+
+        Board board = new Board(rows, cols);
+        for (int r = 0; r < rows; r++) {
+            if (pos >= end)
+                throw malformed("expected " + rows + " rows, found " + r);
+            int c = 0;
+            while (pos < end && bytes[pos] != '\n' && bytes[pos] != '\r') {
+                if (c == cols) {
+                    if (!isBlankToEndOfLine())
+                        throw malformed("expected " + cols + " columns");
+                    break;
+                }
+                decodeNative(board, bytes[pos], board.toIndex(r, c));
+                pos++;
+                c++;
+            }
+            if (c < cols)
+                throw malformed("expected " + cols + " columns, found " + c);
+            skipRestOfLine();
+        }
+        return finish(board);
+    }
+
+    private Board parseXsb() throws InvalidMapException {
+        //find the extent of the board first: consecutive non-blank lines made of board chars
+        int rows = 0;
+        int cols = 0;
+        int firstLine = line;
+        while (pos < end) {
+            int s = pos;
+            int e = s;
+            while (e < end && bytes[e] != '\n')
+                e++;
+            int contentEnd = e > s && bytes[e - 1] == '\r' ? e - 1 : e;
+            if (!isXsbBoardLine(s, contentEnd)) {
+                if (rows == 0) {
+                    pos = firstInvalidXsb(s, contentEnd);
+                    throw new UnknownElementException(location() + "unknown char: " + (char) bytes[pos]);
+                }
+                break;
+            }
+            if (rows == lineStarts.length) {
+                lineStarts = Arrays.copyOf(lineStarts, rows * 2);
+                lineEnds = Arrays.copyOf(lineEnds, rows * 2);
+            }
+            lineStarts[rows] = s;
+            lineEnds[rows] = contentEnd;
+            cols = Math.max(cols, contentEnd - s);
+            rows++;
+            pos = e < end ? e + 1 : e;
+        }
+        if (rows == 0)
+            throw malformed("no map found");
+        pos = lineStarts[0];
+        checkSize(rows, cols);
+
+        Board board = new Board(rows, cols);
+        for (int r = 0; r < rows; r++) {
+            lineStart = lineStarts[r];
+            line = firstLine + r;
+            for (pos = lineStarts[r]; pos < lineEnds[r]; pos++) {
+                decodeXsb(board, bytes[pos], board.toIndex(r, pos - lineStart));
+            }
+        }
+        return finish(board);
+    }
+
+    private void checkSize(int rows, int cols) throws InvalidMapException {
+        if ((long) (rows + 2) * (cols + 2) > MAX_SQUARES)
+            throw malformed("the map is too large: " + rows + " rows of " + cols + " columns");
+    }
+
+    private Board finish(Board board) throws InvalidMapException {
+        if (board.getPlayer() < 0)
+            throw new InvalidNumberOfPlayersException("0 players found!");
+        return board;
+    }
+
+    private void decodeNative(Board board, byte b, int index) throws InvalidMapException {
+        switch (b) {
+            case '.':
+                break;
+            case '#':
+                board.setWall(index);
+                break;
+            case 'C':
+                board.setDest(index);
+                break;
+            case 'c':
+                board.setCrate(index);
+                break;
+            case '$':
+                board.setCrate(index);
+                board.setDest(index);
+                break;
+            case '@':
+                setPlayer(board, index);
+                break;
+            case '&':
+                setPlayer(board, index);
+                board.setDest(index);
+                break;
+            default:
+                throw new UnknownElementException(location() + "unknown char: " + (char) b);
+        }
+    }
+
+    private void decodeXsb(Board board, byte b, int index) throws InvalidMapException {
+        switch (b) {
+            case ' ':
+            case '-':
+            case '_':
+                break;
+            case '#':
+                board.setWall(index);
+                break;
+            case '.':
+                board.setDest(index);
+                break;
+            case '$':
+                board.setCrate(index);
+                break;
+            case '*':
+                board.setCrate(index);
+                board.setDest(index);
+                break;
+            case '@':
+                setPlayer(board, index);
+                break;
+            case '+':
+                setPlayer(board, index);
+                board.setDest(index);
+                break;
+            default:
+                throw new UnknownElementException(location() + "unknown char: " + (char) b);
+        }
+    }
+
+    private void setPlayer(Board board, int index) throws InvalidMapException {
+        if (board.getPlayer() >= 0)
+            throw new InvalidNumberOfPlayersException(location() + ">1 players found!");
+        board.setPlayer(index);
+    }
+
+    private static boolean isXsbChar(byte b) {
+        switch (b) {
+            case ' ':
+            case '-':
+            case '_':
+            case '#':
+            case '.':
+            case '$':
+            case '*':
+            case '@':
+            case '+':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * A board line has only board chars and at least one of them is not a space.
+     */
+    private boolean isXsbBoardLine(int start, int end) {
+        boolean blank = true;
+        for (int i = start; i < end; i++) {
+            if (!isXsbChar(bytes[i]))
+                return false;
+            if (bytes[i] != ' ')
+                blank = false;
+        }
+        return !blank;
+    }
+
+    private int firstInvalidXsb(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isXsbChar(bytes[i]))
+                return i;
+        }
+        return start;
+    }
+
+    private int readInt(String what) throws InvalidMapException {
+        while (pos < end && isWhitespace(bytes[pos]))
+            advance();
+        if (pos >= end || !isDigit(bytes[pos]))
+            throw malformed("expected the " + what);
+        int value = 0;
+        while (pos < end && isDigit(bytes[pos])) {
+            value = value * 10 + (bytes[pos] - '0');
+            if (value > 1 << 15)
+                throw malformed("the " + what + " is too large");
+            pos++;
+        }
+        if (value == 0)
+            throw malformed("the " + what + " must be positive");
+        return value;
+    }
+
+    /**
+     * Skips empty lines and, for XSB files, comment lines starting with ;
+     */
+    private void skipBlankLines() {
+        while (pos < end) {
+            int i = pos;
+            while (i < end && (bytes[i] == ' ' || bytes[i] == '\t' || bytes[i] == '\r'))
+                i++;
+            if (i < end && bytes[i] == ';') {
+                while (i < end && bytes[i] != '\n')
+                    i++;
+            }
+            if (i < end && bytes[i] != '\n')
+                return;
+            pos = i;
+            if (pos < end)
+                advance();
+        }
+    }
+
+    private boolean isBlankToEndOfLine() {
+        for (int i = pos; i < end && bytes[i] != '\n'; i++) {
+            if (!isWhitespace(bytes[i]))
+                return false;
+        }
+        return true;
+    }
+
+    private void skipRestOfLine() {
+        while (pos < end && bytes[pos] != '\n')
+            pos++;
+        if (pos < end)
+            advance();
+    }
+
+    private void advance() {
+        if (bytes[pos++] == '\n') {
+            line++;
+            lineStart = pos;
+        }
+    }
+
+    private int peek() {
+        return pos < end ? bytes[pos] : -1;
+    }
+
+    private String location() {
+        return "line " + line + ", column " + (pos - lineStart + 1) + ": ";
+    }
+
+    private MalformedMapException malformed(String message) {
+        return new MalformedMapException(location() + message);
+    }
+
+    private static boolean isDigit(int b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+}
@@ -0,0 +1,160 @@
+package model.Metrics;
+
+import model.Map.Board;
+import model.Map.Map;
+import model.Solver.Solution;
+import model.Solver.Solver;
+
+import java.util.Comparator;
+
+/**
+ * Measurements of how hard a level is, taken by solving it with a bounded {@link Solver} search: the length of the
+ * push-optimal solution, the number of search nodes it took, the average branching factor of the search, and the
+ * number of dead squares, i.e. squares a crate can never be pushed off to a destination from.
+ * <p>
+ * Levels the search did not solve within its limits only have their search statistics.
+ */
+public class LevelMetrics {
+    /**
+     * Orders levels from easiest to hardest: solved levels by nodes expanded, then pushes, then moves, followed by
+     * the levels the search gave up on and finally the unsolvable ones
+     */
+    public static final Comparator<LevelMetrics> DIFFICULTY = Comparator.comparingInt(LevelMetrics::statusRank)
+            .thenComparingLong(LevelMetrics::getNodesExpanded)
+            .thenComparingInt(LevelMetrics::getNumPushes)
+            .thenComparingInt(LevelMetrics::getNumMoves);
+
+    private final Solution.Status status;
+    private final int numMoves;
+    private final int numPushes;
+    private final long nodesExpanded;
+    private final long nodesGenerated;
+    private final int numDeadSquares;
+
+    LevelMetrics(Solution.Status status, int numMoves, int numPushes, long nodesExpanded, long nodesGenerated,
+                 int numDeadSquares) {
+        this.status = status;
+        this.numMoves = numMoves;
+        this.numPushes = numPushes;
+        this.nodesExpanded = nodesExpanded;
+        this.nodesGenerated = nodesGenerated;
+        this.numDeadSquares = numDeadSquares;
+    }
+
+    /**
+     * Measures a level. This runs a solver search, so it can take up to the time limit.
+     *
+     * @param map              The level in its starting position. It is not modified.
+     * @param timeLimitMillis  The longest the search may run for
+     * @param memoryLimitBytes The most memory the search may use
+     * @return The metrics of the level
+     */
+    public static LevelMetrics measure(Map map, long timeLimitMillis, long memoryLimitBytes) {
+        Board board = map.getBoard();
+        int numDeadSquares = 0;
+        for (int i = 0; i < board.getSize(); i++) {
+            if (board.isDeadSquare(i))
+                numDeadSquares++;
+        }
+
+        Solver solver = new Solver(map);
+        solver.setLimits(timeLimitMillis, memoryLimitBytes);
+        Solution solution = solver.solve();
+        return new LevelMetrics(solution.getStatus(), solution.getNumMoves(), solution.getNumPushes(),
+                solution.getNodesExpanded(), solution.getNodesGenerated(), numDeadSquares);
+    }
+
+    private int statusRank() {
+        switch (status) {
+            case SOLVED:
+                return 0;
+            case UNSOLVABLE:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * @return How the search ended, see {@link Solution#getStatus()}
+     */
+    public Solution.Status getStatus() {
+        return status;
+    }
+
+    public boolean isSolved() {
+        return status == Solution.Status.SOLVED;
+    }
+
+    /**
+     * @return Whether the search finished, so measuring the level again gives the same result. A search which ran
+     * out of time or memory depends on the machine and its load.
+     */
+    public boolean isConclusive() {
+        return status == Solution.Status.SOLVED || status == Solution.Status.UNSOLVABLE;
+    }
+
+    /**
+     * @return The number of moves of the push-optimal solution, or 0 if the level was not solved
+     */
+    public int getNumMoves() {
+        return numMoves;
+    }
+
+    /**
+     * @return The number of pushes of the push-optimal solution, or 0 if the level was not solved
+     */
+    public int getNumPushes() {
+        return numPushes;
+    }
+
+    public long getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    public long getNodesGenerated() {
+        return nodesGenerated;
+    }
+
+    /**
+     * @return The average number of new positions each expanded node led to, after pruning deadlocks and positions
+     * already seen
+     */
+    public double getBranchingFactor() {
+        return nodesExpanded == 0 ? 0 : (nodesGenerated - 1) / (double) nodesExpanded;
+    }
+
+    public int getNumDeadSquares() {
+        return numDeadSquares;
+    }
+
+    /**
+     * @return The metrics as a single line of space separated fields, see {@link #decode(String)}
+     */
+    String encode() {
+        return status + " " + numMoves + " " + numPushes + " " + nodesExpanded + " " + nodesGenerated + " "
+                + numDeadSquares;
+    }
+
+    /**
+     * @param line Metrics from {@link #encode()}
+     * @return The metrics
+     * @throws IllegalArgumentException when the line is malformed
+     */
+    static LevelMetrics decode(String line) {
+        String[] fields = line.trim().split(" ");
+        if (fields.length != 6)
+            throw new IllegalArgumentException("Expected 6 fields, got " + fields.length);
+        return new LevelMetrics(Solution.Status.valueOf(fields[0]), Integer.parseInt(fields[1]),
+                Integer.parseInt(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4]),
+                Integer.parseInt(fields[5]));
+    }
+
+    @Override
+    public String toString() {
+        String search = String.format("%d nodes, branching %.1f, %d dead squares", nodesExpanded,
+                getBranchingFactor(), numDeadSquares);
+        return isSolved() ? numPushes + " pushes, " + numMoves + " moves, " + search
+                : status.toString().toLowerCase().replace('_', ' ') + " after " + search;
+    }
+}
@@ -0,0 +1,100 @@
+package model.Metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link LevelMetrics} of levels on disk, so levels are only measured once. Entries are keyed by the
+ * content hash of the level, see {@link model.Replay.Replay#levelHash(model.Map.Board)}, so renamed or repacked
+ * levels are still found and edited levels are measured again.
+ * <p>
+ * The file is text, a header followed by a line per level, and new entries are appended as they are measured:
+ * <pre>
+ * sokoban-metrics 1
+ * 5f1c9e0a33b2d7e4 SOLVED 287 51 10893 11588 12
+ * </pre>
+ * The version in the header changes whenever measuring would give different results, e.g. with a new search,
+ * which discards the file. Only conclusive metrics are kept, see {@link LevelMetrics#isConclusive()}, so levels
+ * the search gave up on are measured again. Lines which cannot be read are skipped. The cache is safe to use from
+ * any thread.
+ */
+public class MetricsCache {
+    private static final String MAGIC = "sokoban-metrics 1";
+
+    private final Path file;
+    private final ConcurrentHashMap<Long, LevelMetrics> entries = new ConcurrentHashMap<>();
+    //whether the file starts with the current header, so entries can be appended to it
+    private boolean headerWritten;
+
+    /**
+     * Reads the cache file, if there is one.
+     *
+     * @param file The cache file, which is created once the first entry is added
+     * @throws IOException when the file exists but cannot be read
+     */
+    public MetricsCache(Path file) throws IOException {
+        this.file = file;
+        if (!Files.isRegularFile(file))
+            return;
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(MAGIC))
+            return;
+        headerWritten = true;
+        for (String line : lines.subList(1, lines.size())) {
+            int space = line.indexOf(' ');
+            try {
+                LevelMetrics metrics = LevelMetrics.decode(line.substring(space + 1));
+                if (metrics.isConclusive())
+                    entries.put(Long.parseUnsignedLong(line.substring(0, space), 16), metrics);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                //e.g. a line cut short when the game was closed while writing it
+            }
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @param levelHash The content hash of the level
+     * @return The metrics of the level, or null if it has not been measured
+     */
+    public LevelMetrics get(long levelHash) {
+        return entries.get(levelHash);
+    }
+
+    /**
+     * Adds the metrics of a level and appends them to the file, if they are conclusive. A file from an older version
+     * is replaced.
+     *
+     * @param levelHash The content hash of the level
+     * @param metrics   The metrics of the level
+     * @throws IOException when the file cannot be written. The entry is still kept in memory.
+     */
+    public void put(long levelHash, LevelMetrics metrics) throws IOException {
+        if (!metrics.isConclusive())
+            return;
+        entries.put(levelHash, metrics);
+        synchronized (this) {
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    headerWritten ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (!headerWritten)
+                    writer.write(MAGIC + "\n");
+                headerWritten = true;
+                writer.write(Long.toHexString(levelHash) + " " + metrics.encode() + "\n");
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
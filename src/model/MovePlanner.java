@@ -0,0 +1,154 @@
+package model;
+
+import model.Map.Bits;
+import model.Map.Board;
+import model.Map.Map;
+import model.Map.Reachability;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plans macro moves for click-to-move: walking the player to a square, and pushing a single crate to a square.
+ * Plans are lists of single moves which can be made in one go with {@link GameLevel#makeMoves(List)}. The board is
+ * never modified.
+ * <p>
+ * Squares are board indices, see {@link Board#toIndex(int, int)}.
+ */
+public class MovePlanner {
+    private static final Map.Direction[] DIRECTIONS = Map.Direction.values();
+
+    private MovePlanner() {
+    }
+
+    /**
+     * @param board The board in its current position
+     * @param to    The square to walk to
+     * @return A shortest walk which does not push any crate, or null if the square cannot be reached that way
+     */
+    public static List<Map.Direction> planWalk(Board board, int to) {
+        Reachability reachability = board.computeReachable();
+        if (!reachability.isReachable(to))
+            return null;
+        ArrayList<Map.Direction> moves = new ArrayList<>();
+        appendWalk(board, reachability, to, moves);
+        return moves;
+    }
+
+    /**
+     * Finds the plan with the fewest pushes which gets a crate to the target, leaving every other crate in place.
+     * The search runs over the crate's square together with the side the player pushes it from; between pushes,
+     * the player walks around the crate along shortest walks.
+     *
+     * @param board  The board in its current position
+     * @param crate  The square of the crate to push
+     * @param target The square to push the crate to
+     * @return The walks and pushes, or null if the crate cannot be pushed there
+     */
+    public static List<Map.Direction> planPush(Board board, int crate, int target) {
+        if (!board.hasCrate(crate) || board.isWall(target))
+            return null;
+        if (crate == target)
+            return new ArrayList<>();
+
+        int numDirections = DIRECTIONS.length;
+        int[] offsets = new int[numDirections];
+        for (Map.Direction d : DIRECTIONS) {
+            offsets[d.ordinal()] = board.offset(d);
+        }
+        Reachability reachability = new Reachability(board);
+        //the other crates stay put, the pushed crate is moved around in this bitset
+        long[] crates = board.copyCrates();
+
+        //a state is crate square * directions + the direction it is about to be pushed in, with the player behind it
+        int numStates = board.getSize() * numDirections;
+        int[] parent = new int[numStates];
+        Arrays.fill(parent, -2);
+        int[] queue = new int[numStates];
+        int head = 0;
+        int tail = 0;
+
+        reachability.compute(crates, board.getPlayer());
+        for (int d = 0; d < numDirections; d++) {
+            if (reachability.isReachable(crate - offsets[d])) {
+                int state = crate * numDirections + d;
+                parent[state] = -1;
+                queue[tail++] = state;
+            }
+        }
+
+        while (head < tail) {
+            int state = queue[head++];
+            int from = state / numDirections;
+            int to = from + offsets[state % numDirections];
+            if (board.isWall(to) || Bits.get(crates, to) && to != crate)
+                continue;
+            if (to == target)
+                return reconstruct(board, reachability, crates, crate, offsets, parent, state);
+
+            Bits.clear(crates, crate);
+            Bits.set(crates, to);
+            reachability.compute(crates, from);
+            for (int d = 0; d < numDirections; d++) {
+                int next = to * numDirections + d;
+                if (parent[next] == -2 && reachability.isReachable(to - offsets[d])) {
+                    parent[next] = state;
+                    queue[tail++] = next;
+                }
+            }
+            Bits.clear(crates, to);
+            Bits.set(crates, crate);
+        }
+        return null;
+    }
+
+    /**
+     * Turns the chain of pushes ending in the given state into moves, adding the walk before every push.
+     */
+    private static List<Map.Direction> reconstruct(Board board, Reachability reachability, long[] crates, int crate,
+                                                   int[] offsets, int[] parent, int last) {
+        ArrayList<Integer> states = new ArrayList<>();
+        for (int state = last; state >= 0; state = parent[state]) {
+            states.add(state);
+        }
+        Collections.reverse(states);
+
+        int numDirections = offsets.length;
+        ArrayList<Map.Direction> moves = new ArrayList<>();
+        int player = board.getPlayer();
+        Bits.clear(crates, crate);
+        for (int state : states) {
+            int from = state / numDirections;
+            int dir = state % numDirections;
+            Bits.set(crates, from);
+            reachability.compute(crates, player);
+            appendWalk(board, reachability, from - offsets[dir], moves);
+            Bits.clear(crates, from);
+            moves.add(DIRECTIONS[dir]);
+            player = from;
+        }
+        Bits.set(crates, crate);
+        return moves;
+    }
+
+    /**
+     * Appends the shortest walk to a square reached by the last computation of the reachability, from where it
+     * started.
+     */
+    private static void appendWalk(Board board, Reachability reachability, int to, List<Map.Direction> moves) {
+        int start = moves.size();
+        for (int square = to; reachability.getPrevious(square) >= 0; square = reachability.getPrevious(square)) {
+            int step = square - reachability.getPrevious(square);
+            for (Map.Direction d : DIRECTIONS) {
+                if (board.offset(d) == step) {
+                    moves.add(d);
+                    break;
+                }
+            }
+        }
+        //the walk was appended backwards
+        Collections.reverse(moves.subList(start, moves.size()));
+    }
+}
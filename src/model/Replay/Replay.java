@@ -0,0 +1,263 @@
+package model.Replay;
+
+import model.Exceptions.InvalidReplayException;
+import model.Map.Board;
+import model.Map.Map;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A recording of the moves a player made to clear a level. It holds:
+ * <ul>
+ * <li>the hash of the level it was recorded on, see {@link #levelHash(Board)}</li>
+ * <li>the moves in LURD notation: l, u, r, d for walks and L, U, R, D for pushes</li>
+ * <li>the time of every move, in milliseconds since the level timer started</li>
+ * </ul>
+ * The file format is text, one field per line:
+ * <pre>
+ * sokoban-replay 1
+ * level 5f1c9e0a33b2d7e4
+ * moves 3r2Ul4D
+ * times 410,120,115,300,...
+ * </pre>
+ * Runs of the same move are run-length encoded, and the times are stored as differences from the previous move.
+ * The times line may be missing, e.g. for solutions which were not played by a person.
+ */
+public class Replay {
+    private static final String MAGIC = "sokoban-replay 1";
+    private static final String LEVEL = "level ";
+    private static final String MOVES = "moves ";
+    private static final String TIMES = "times ";
+    private static final String LURD = "udlr";
+    //the most moves a replay may decode to, so a short run-length encoded file cannot expand without bound
+    private static final int MAX_MOVES = 1 << 24;
+
+    private final long levelHash;
+    private final String moves;
+    private final int[] times;
+
+    /**
+     * @param levelHash The hash of the level the moves were made on
+     * @param moves     The moves in LURD notation, not run-length encoded. They are not checked here: any other
+     *                  char is an illegal move when the replay is played back.
+     * @param times     The time of every move in milliseconds since the start, or null if unknown
+     */
+    public Replay(long levelHash, String moves, int[] times) {
+        if (times != null && times.length != moves.length())
+            throw new IllegalArgumentException("Expected " + moves.length() + " times, got " + times.length);
+        this.levelHash = levelHash;
+        this.moves = moves;
+        this.times = times;
+    }
+
+    /**
+     * Hashes everything which makes up a level in its starting position: its size, walls, destinations, crates and
+     * player. Unlike {@link Board#getHash()}, which only covers the crates and player, levels which differ in any
+     * way get different hashes.
+     *
+     * @param board The board in its starting position
+     * @return The 64-bit FNV-1a hash of the board
+     */
+    public static long levelHash(Board board) {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ board.getRows()) * 0x100000001b3L;
+        hash = (hash ^ board.getCols()) * 0x100000001b3L;
+        for (int r = 0; r < board.getRows(); r++) {
+            for (int c = 0; c < board.getCols(); c++) {
+                int index = board.toIndex(r, c);
+                int square = board.isWall(index) ? 1
+                        : (board.isDest(index) ? 2 : 0) | (board.hasCrate(index) ? 4 : 0)
+                        | (board.getPlayer() == index ? 8 : 0);
+                hash = (hash ^ square) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @param d       The direction of a move
+     * @param pushed  Whether the move pushed a crate
+     * @return The LURD char of the move
+     */
+    public static char toLurd(Map.Direction d, boolean pushed) {
+        char c = LURD.charAt(d.ordinal());
+        return pushed ? Character.toUpperCase(c) : c;
+    }
+
+    /**
+     * @param lurd A LURD char
+     * @return The direction of the move, or null if the char is not a move
+     */
+    public static Map.Direction toDirection(char lurd) {
+        int i = LURD.indexOf(Character.toLowerCase(lurd));
+        return i < 0 ? null : Map.Direction.values()[i];
+    }
+
+    public long getLevelHash() {
+        return levelHash;
+    }
+
+    /**
+     * @return The moves in LURD notation, not run-length encoded
+     */
+    public String getMoves() {
+        return moves;
+    }
+
+    public int getNumMoves() {
+        return moves.length();
+    }
+
+    public boolean hasTimes() {
+        return times != null;
+    }
+
+    /**
+     * @param move The index of a move
+     * @return The time of the move in milliseconds since the start
+     */
+    public int getTime(int move) {
+        return times[move];
+    }
+
+    /**
+     * @return The time of the last move in milliseconds, or 0 if there are no moves or times
+     */
+    public int getDuration() {
+        return times == null || times.length == 0 ? 0 : times[times.length - 1];
+    }
+
+    /**
+     * @return The replay in the text format described above
+     */
+    public String encode() {
+        StringBuilder text = new StringBuilder();
+        text.append(MAGIC).append('\n');
+        text.append(LEVEL).append(String.format("%016x", levelHash)).append('\n');
+        text.append(MOVES).append(runLengthEncode(moves)).append('\n');
+        if (times != null) {
+            text.append(TIMES);
+            int previous = 0;
+            for (int i = 0; i < times.length; i++) {
+                if (i > 0)
+                    text.append(',');
+                text.append(times[i] - previous);
+                previous = times[i];
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * @param text A replay in the text format described above
+     * @return The replay
+     * @throws InvalidReplayException when the text is not a valid replay
+     */
+    public static Replay decode(String text) throws InvalidReplayException {
+        String[] lines = text.split("\\R");
+        if (lines.length < 3 || !lines[0].equals(MAGIC))
+            throw new InvalidReplayException("Not a replay, expected " + MAGIC);
+        if (!lines[1].startsWith(LEVEL) || !lines[2].startsWith(MOVES))
+            throw new InvalidReplayException("Expected the level and moves lines");
+
+        long levelHash;
+        try {
+            levelHash = Long.parseUnsignedLong(lines[1].substring(LEVEL.length()).trim(), 16);
+        } catch (NumberFormatException e) {
+            throw new InvalidReplayException("Invalid level hash: " + lines[1]);
+        }
+        String moves = runLengthDecode(lines[2].substring(MOVES.length()).trim());
+
+        int[] times = null;
+        if (lines.length > 3 && lines[3].startsWith(TIMES)) {
+            String deltas = lines[3].substring(TIMES.length()).trim();
+            String[] parts = deltas.isEmpty() ? new String[0] : deltas.split(",");
+            if (parts.length != moves.length())
+                throw new InvalidReplayException("Expected " + moves.length() + " times, got " + parts.length);
+            times = new int[parts.length];
+            int time = 0;
+            try {
+                for (int i = 0; i < parts.length; i++) {
+                    int delta = Integer.parseInt(parts[i].trim());
+                    if (delta < 0)
+                        throw new InvalidReplayException("Times must not go backwards, at move " + (i + 1));
+                    time += delta;
+                    times[i] = time;
+                }
+            } catch (NumberFormatException e) {
+                throw new InvalidReplayException("Invalid time: " + e.getMessage());
+            }
+        }
+        return new Replay(levelHash, moves, times);
+    }
+
+    public void write(Path file) throws IOException {
+        Files.write(file, encode().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Replay read(Path file) throws IOException, InvalidReplayException {
+        return decode(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param moves LURD moves, e.g. llllRRu
+     * @return The moves with runs replaced by their length and the move, e.g. 4l2Ru
+     */
+    static String runLengthEncode(String moves) {
+        StringBuilder encoded = new StringBuilder();
+        int i = 0;
+        while (i < moves.length()) {
+            char c = moves.charAt(i);
+            int run = 1;
+            while (i + run < moves.length() && moves.charAt(i + run) == c)
+                run++;
+            if (run > 1)
+                encoded.append(run);
+            encoded.append(c);
+            i += run;
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * @param encoded Moves from {@link #runLengthEncode(String)}
+     * @return The moves
+     * @throws InvalidReplayException when the moves are malformed, have a run of 0, or decode to more than
+     *                                {@link #MAX_MOVES} moves
+     */
+    static String runLengthDecode(String encoded) throws InvalidReplayException {
+        StringBuilder moves = new StringBuilder();
+        int run = 0;
+        boolean hasRun = false;
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            if (c >= '0' && c <= '9') {
+                run = run * 10 + (c - '0');
+                hasRun = true;
+                if (run > MAX_MOVES)
+                    throw new InvalidReplayException("Run too long at column " + (i + 1));
+                continue;
+            }
+            if (toDirection(c) == null)
+                throw new InvalidReplayException("Unknown move '" + c + "' at column " + (i + 1));
+            if (hasRun && run == 0)
+                throw new InvalidReplayException("Run of 0 moves at column " + (i + 1));
+            int length = hasRun ? run : 1;
+            if (length > MAX_MOVES - moves.length())
+                throw new InvalidReplayException("More than " + MAX_MOVES + " moves at column " + (i + 1));
+            char[] repeated = new char[length];
+            Arrays.fill(repeated, c);
+            moves.append(repeated);
+            run = 0;
+            hasRun = false;
+        }
+        if (hasRun)
+            throw new InvalidReplayException("Run length without a move at the end");
+        return moves.toString();
+    }
+}
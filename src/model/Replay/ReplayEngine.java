@@ -0,0 +1,129 @@
+package model.Replay;
+
+import model.GameLevel;
+import model.Map.Board;
+import model.Map.Map;
+
+/**
+ * Plays back a {@link Replay}, in one of two ways:
+ * <ul>
+ * <li>{@link #verify(Replay, Board)} runs the moves at full speed on a copy of a {@link Board}, without any cells
+ * or listeners, and checks that every move is legal and the level ends up solved</li>
+ * <li>an instance steps a {@link GameLevel} through the moves as their recorded times pass, see
+ * {@link #advanceTo(long)}, so the UI can show the replay in real time</li>
+ * </ul>
+ */
+public class ReplayEngine {
+    /**
+     * The time between moves when playing back a replay without recorded times
+     */
+    public static final long DEFAULT_INTERVAL_MILLIS = 150;
+
+    private final Replay replay;
+    private final GameLevel gameLevel;
+    private int nextMove;
+
+    /**
+     * @param replay    The replay to play back
+     * @param gameLevel The level to make the moves on, which should be in its starting position
+     */
+    public ReplayEngine(Replay replay, GameLevel gameLevel) {
+        this.replay = replay;
+        this.gameLevel = gameLevel;
+    }
+
+    /**
+     * Makes every move whose recorded time is at most the given time. A replay without times makes a move every
+     * {@link #DEFAULT_INTERVAL_MILLIS}.
+     *
+     * @param millis Milliseconds since the playback started
+     * @return The number of moves made
+     * @throws IllegalStateException when a move could not be made, i.e. the level is not the one recorded
+     */
+    public int advanceTo(long millis) {
+        int made = 0;
+        while (nextMove < replay.getNumMoves() && timeOf(nextMove) <= millis) {
+            char lurd = replay.getMoves().charAt(nextMove);
+            Map.Direction d = Replay.toDirection(lurd);
+            if (d == null || !gameLevel.makeMove(d))
+                throw new IllegalStateException("Move " + (nextMove + 1) + " (" + lurd + ") could not be made");
+            nextMove++;
+            made++;
+        }
+        return made;
+    }
+
+    private long timeOf(int move) {
+        return replay.hasTimes() ? replay.getTime(move) : (move + 1) * DEFAULT_INTERVAL_MILLIS;
+    }
+
+    public boolean isFinished() {
+        return nextMove == replay.getNumMoves();
+    }
+
+    /**
+     * @return The number of moves made so far
+     */
+    public int getPosition() {
+        return nextMove;
+    }
+
+    /**
+     * Runs the replay from the start position as fast as possible and checks it. A move which is not in LURD
+     * notation is an illegal move.
+     *
+     * @param replay The replay to check
+     * @param start  The level in its starting position, which is not modified
+     * @return The outcome of the check
+     */
+    public static Result verify(Replay replay, Board start) {
+        if (replay.getLevelHash() != Replay.levelHash(start))
+            return new Result(Result.Status.WRONG_LEVEL, -1);
+        Board board = new Board(start);
+        String moves = replay.getMoves();
+        for (int i = 0; i < moves.length(); i++) {
+            char lurd = moves.charAt(i);
+            Map.Direction d = Replay.toDirection(lurd);
+            if (d == null || !board.movePlayer(d) || board.wasLastMovePush() != Character.isUpperCase(lurd))
+                return new Result(Result.Status.ILLEGAL_MOVE, i);
+        }
+        return new Result(board.isSolved() ? Result.Status.SOLVED : Result.Status.NOT_SOLVED, -1);
+    }
+
+    /**
+     * The outcome of {@link #verify(Replay, Board)}
+     */
+    public static class Result {
+        private final Status status;
+        private final int failedMove;
+
+        Result(Status status, int failedMove) {
+            this.status = status;
+            this.failedMove = failedMove;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public boolean isSolved() {
+            return status == Status.SOLVED;
+        }
+
+        /**
+         * @return The index of the move which could not be made as recorded, or -1 if there is none
+         */
+        public int getFailedMove() {
+            return failedMove;
+        }
+
+        @Override
+        public String toString() {
+            return failedMove < 0 ? status.toString() : status + " at move " + (failedMove + 1);
+        }
+
+        public enum Status {
+            SOLVED, NOT_SOLVED, WRONG_LEVEL, ILLEGAL_MOVE
+        }
+    }
+}
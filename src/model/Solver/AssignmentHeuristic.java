@@ -0,0 +1,220 @@
+package model.Solver;
+
+import java.util.Arrays;
+
+/**
+ * A lower bound on the pushes still needed: the cheapest way to give every crate its own destination, where a crate
+ * costs its push distance to the destination ignoring the other crates. This minimum-cost assignment is found with
+ * the Hungarian method. It is never below the sum of nearest-destination distances, and is unreachable when crates
+ * compete for destinations only some of them can get to.
+ * <p>
+ * The game is won once every destination has a crate, so with more crates than destinations the spare crates are
+ * assigned to padding destinations which cost nothing, and with fewer crates there is no assignment at all. In a
+ * sub-problem, where the crates only need destinations of their own, fewer crates are padded with crates which cost
+ * nothing instead.
+ * <p>
+ * Each node keeps its assignment and the dual potentials proving it optimal, see {@link #save()}. A push only
+ * changes the costs of the pushed crate, so the child's assignment is repaired from its parent's with one augmenting
+ * path, at worst O(d^2) for d destinations and usually much less, instead of being solved again in O(d^3).
+ * <p>
+ * Evaluations work in the buffers of this object and do not allocate, so each search thread needs its own.
+ */
+class AssignmentHeuristic {
+    private static final int UNREACHABLE = SearchSpace.UNREACHABLE;
+    private static final int NONE = -1;
+
+    private final int numGoals;
+    //the push distance from square s to goal j is at s * numGoals + j
+    private final int[] distances;
+    //the size of the square cost matrix: goals past numGoals are the padding for spare crates
+    private final int n;
+    private final boolean partial;
+
+    //rows are crates, columns are goals, and rows past the crates are padding which costs nothing
+    private final int[] rowSquare;
+    private final int[] colRow;
+    private final int[] u;
+    private final int[] v;
+    //the shortest reduced distances of the augmenting path search, the previous column on each path, and the
+    //columns the search has finished with
+    private final int[] minReduced;
+    private final int[] way;
+    private final boolean[] used;
+
+    AssignmentHeuristic(SearchSpace space) {
+        this.numGoals = space.numGoals;
+        this.distances = space.goalDistances;
+        partial = space.partial;
+        n = partial ? numGoals : Math.max(space.numCrates, numGoals);
+        rowSquare = new int[n];
+        colRow = new int[n];
+        u = new int[n];
+        v = new int[n];
+        minReduced = new int[n];
+        way = new int[n];
+        used = new boolean[n];
+    }
+
+    /**
+     * @return The length of the state saved for a node, see {@link #save()}
+     */
+    int stateLength() {
+        return 2 * n;
+    }
+
+    /**
+     * Solves the assignment of a position from scratch, e.g. for the root of a search.
+     *
+     * @param crates The crates of the position
+     * @return The cost of the cheapest assignment, or UNREACHABLE if there is none
+     */
+    int evaluate(long[] crates) {
+        int numRows = 0;
+        for (int crate = SearchSpace.nextCrate(crates, 0); crate >= 0; crate = SearchSpace.nextCrate(crates, crate + 1)) {
+            if (numRows == n)
+                return UNREACHABLE;
+            rowSquare[numRows++] = crate;
+        }
+        //a destination would be left without a crate
+        if (numRows < numGoals && !partial)
+            return UNREACHABLE;
+        Arrays.fill(rowSquare, numRows, n, NONE);
+        Arrays.fill(colRow, NONE);
+        Arrays.fill(u, 0);
+        Arrays.fill(v, 0);
+        for (int row = 0; row < n; row++) {
+            if (!augment(row))
+                return UNREACHABLE;
+        }
+        return totalCost();
+    }
+
+    /**
+     * Repairs the assignment of a node for the push of one of its crates.
+     *
+     * @param parent The state of the node before the push, from {@link #save()}
+     * @param from   The square of the pushed crate before the push
+     * @param to     The square of the pushed crate after the push
+     * @return The cost of the cheapest assignment after the push, or UNREACHABLE if there is none
+     */
+    int update(int[] parent, int from, int to) {
+        int moved = NONE;
+        for (int j = 0; j < n; j++) {
+            int square = parent[j];
+            rowSquare[j] = square;
+            colRow[j] = j;
+            v[j] = parent[n + j];
+            //assigned pairs have no slack, which gives the row potentials
+            u[j] = cost(square, j) - v[j];
+            if (square == from)
+                moved = j;
+        }
+
+        //the moved crate's row is the only one whose costs change: unassign it, lower its potential until no cost
+        //is below it again, and assign it again along the cheapest augmenting path
+        rowSquare[moved] = to;
+        colRow[moved] = NONE;
+        int minSlack = UNREACHABLE;
+        for (int j = 0; j < n; j++) {
+            int cost = cost(to, j);
+            if (cost != UNREACHABLE)
+                minSlack = Math.min(minSlack, cost - v[j]);
+        }
+        if (minSlack == UNREACHABLE)
+            return UNREACHABLE;
+        u[moved] = minSlack;
+        return augment(moved) ? totalCost() : UNREACHABLE;
+    }
+
+    /**
+     * @return The state of the last successful evaluation, for {@link #update(int[], int, int)} of its children:
+     * the square of the crate assigned to each goal, or -1, followed by the potential of each goal
+     */
+    int[] save() {
+        int[] state = new int[stateLength()];
+        save(state);
+        return state;
+    }
+
+    /**
+     * @param state Receives the state, see {@link #save()}. It must have room for {@link #stateLength()} ints.
+     */
+    void save(int[] state) {
+        for (int j = 0; j < n; j++) {
+            state[j] = rowSquare[colRow[j]];
+            state[n + j] = v[j];
+        }
+    }
+
+    private int cost(int square, int goal) {
+        return square == NONE || goal >= numGoals ? 0 : distances[square * numGoals + goal];
+    }
+
+    private int totalCost() {
+        int total = 0;
+        for (int j = 0; j < n; j++) {
+            total += cost(rowSquare[colRow[j]], j);
+        }
+        return total;
+    }
+
+    /**
+     * Assigns an unassigned row along the shortest augmenting path in reduced costs, a Dijkstra search over the
+     * columns, and updates the potentials so that every cost stays at or above them and assigned pairs stay tight.
+     *
+     * @return Whether there was an augmenting path, i.e. whether the rows can still all be assigned
+     */
+    private boolean augment(int row) {
+        Arrays.fill(minReduced, UNREACHABLE);
+        Arrays.fill(used, false);
+        int col = NONE;
+        int curRow = row;
+        while (true) {
+            int square = rowSquare[curRow];
+            int uRow = u[curRow];
+            int delta = UNREACHABLE;
+            int next = NONE;
+            for (int j = 0; j < n; j++) {
+                if (used[j])
+                    continue;
+                int cost = cost(square, j);
+                if (cost != UNREACHABLE) {
+                    int reduced = cost - uRow - v[j];
+                    if (reduced < minReduced[j]) {
+                        minReduced[j] = reduced;
+                        way[j] = col;
+                    }
+                }
+                if (minReduced[j] < delta) {
+                    delta = minReduced[j];
+                    next = j;
+                }
+            }
+            if (next == NONE)
+                return false;
+
+            u[row] += delta;
+            for (int j = 0; j < n; j++) {
+                if (used[j]) {
+                    u[colRow[j]] += delta;
+                    v[j] -= delta;
+                } else if (minReduced[j] != UNREACHABLE) {
+                    minReduced[j] -= delta;
+                }
+            }
+            used[next] = true;
+            col = next;
+            curRow = colRow[next];
+            if (curRow == NONE)
+                break;
+        }
+
+        //flip the path back to the row
+        while (col != NONE) {
+            int prev = way[col];
+            colRow[col] = prev == NONE ? row : colRow[prev];
+            col = prev;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,356 @@
+package model.Solver;
+
+import model.Deadlock.DeadlockEngine;
+import model.Map.Bits;
+import model.Map.Board;
+import model.Map.Map;
+import model.Map.Reachability;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A parallel meet-in-the-middle solver. A forward search pushes crates from the start position while a backward
+ * search pulls them from the goal, i.e. every crate on a destination with the player in any region. Each direction
+ * runs on its own threads, and both record the positions they reach in concurrent tables keyed by Zobrist hash.
+ * As soon as a position reached in one direction is found in the other's table, the two paths are joined.
+ * <p>
+ * Both searches are best-first on pushes so far plus a lower bound on the pushes still needed, like {@link Solver},
+ * but since the threads do not expand nodes in a strict order and the searches stop at the first meeting, the
+ * solution is not necessarily push-optimal. In exchange, each direction only has to search about half as deep,
+ * which is what makes hard levels tractable.
+ * <p>
+ * Levels with a different number of crates and destinations have no single goal position, so they are solved by a
+ * forward {@link Solver} instead.
+ */
+public class BidirectionalSolver {
+    private static final int CHECK_INTERVAL = 4096;
+    //a table entry with its boxed key, on top of the node itself
+    private static final int ENTRY_BYTES = 64;
+
+    private final SearchSpace space;
+    private final Board board;
+    private final int[] offsets;
+    private final boolean[] walls;
+    private int numThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private long timeLimitMillis = Long.MAX_VALUE;
+    private long timeLimitNanos = Long.MAX_VALUE;
+    private long memoryLimitBytes = Long.MAX_VALUE;
+
+    //the state of a running search
+    private long start;
+    private long maxNodes;
+    private final AtomicLong expanded = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+    private volatile boolean done;
+    private Solution.Status status;
+    private String moves;
+    private int numPushes;
+
+    /**
+     * @param map The map to solve. The solver works on a copy, starting from the map's current position.
+     */
+    public BidirectionalSolver(Map map) {
+        this.space = new SearchSpace(map);
+        this.board = space.board;
+        this.offsets = space.offsets;
+        this.walls = space.walls;
+    }
+
+    /**
+     * @param numThreads The number of search threads, split between the two directions. At least 2.
+     */
+    public void setThreads(int numThreads) {
+        if (numThreads < 2)
+            throw new IllegalArgumentException("At least 2 threads are needed, got " + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Bounds the next call to {@link #solve()}, see {@link Solver#setLimits(long, long)}. The limits are shared
+     * by both directions.
+     *
+     * @param timeLimitMillis  The longest the search may run for, in milliseconds
+     * @param memoryLimitBytes The most memory the search may use, in bytes
+     */
+    public void setLimits(long timeLimitMillis, long memoryLimitBytes) {
+        this.timeLimitMillis = timeLimitMillis;
+        this.timeLimitNanos = timeLimitMillis == Long.MAX_VALUE ? Long.MAX_VALUE : timeLimitMillis * 1_000_000;
+        this.memoryLimitBytes = memoryLimitBytes;
+    }
+
+    /**
+     * Runs both searches until they meet, one of them is exhausted or a limit is reached. Interrupting the calling
+     * thread stops the search with status {@link Solution.Status#TIMED_OUT}. Only one search may run at a time.
+     *
+     * @return The solution, or a result with status {@link Solution.Status#UNSOLVABLE},
+     * {@link Solution.Status#TIMED_OUT} or {@link Solution.Status#OUT_OF_MEMORY}
+     */
+    public Solution solve() {
+        long[] startCrates = board.copyCrates();
+        if (Bits.count(startCrates) != Bits.count(space.dests)) {
+            Solver solver = new Solver(space);
+            solver.setLimits(timeLimitMillis, memoryLimitBytes);
+            return solver.solve();
+        }
+
+        start = System.nanoTime();
+        long peakMemory = SearchSpace.usedMemory();
+        expanded.set(0);
+        generated.set(0);
+        done = false;
+        status = null;
+        moves = null;
+        numPushes = 0;
+        maxNodes = memoryLimitBytes == Long.MAX_VALUE ? Long.MAX_VALUE
+                : memoryLimitBytes / (Solver.NODE_BYTES + ENTRY_BYTES + 8L * startCrates.length);
+
+        Frontier forward = new Frontier(true, space.minPushes);
+        Frontier backward = new Frontier(false, space.pushDistances(startCrates, false));
+        forward.other = backward;
+        backward.other = forward;
+
+        int h = space.sumDistances(startCrates, forward.distances);
+        long[] goalCrates = space.dests.clone();
+        int goalH = space.sumDistances(goalCrates, backward.distances);
+        if (h == SearchSpace.UNREACHABLE || goalH == SearchSpace.UNREACHABLE)
+            return new Solution(Solution.Status.UNSOLVABLE, null, 0, 0, 1, System.nanoTime() - start, peakMemory);
+
+        Reachability reachability = new Reachability(board);
+        long crateHash = board.getCrateHash();
+        int player = reachability.compute(startCrates, board.getPlayer());
+        forward.add(new Node(startCrates, crateHash, player, crateHash ^ space.zobrist.playerKey(player), 0, h,
+                null, -1, -1));
+        if (space.isSolved(startCrates))
+            return new Solution(Solution.Status.SOLVED, "", 0, 0, 1, System.nanoTime() - start, peakMemory);
+
+        //the player may end up in any region of the goal position
+        long goalHash = 0;
+        for (int crate = SearchSpace.nextCrate(goalCrates, 0); crate >= 0;
+             crate = SearchSpace.nextCrate(goalCrates, crate + 1)) {
+            goalHash ^= space.zobrist.crateKey(crate);
+        }
+        for (int square = 0; square < space.size; square++) {
+            if (walls[square] || Bits.get(goalCrates, square))
+                continue;
+            int region = reachability.compute(goalCrates, square);
+            long hash = goalHash ^ space.zobrist.playerKey(region);
+            if (!backward.seen.containsKey(hash))
+                backward.add(new Node(goalCrates, goalHash, region, hash, 0, goalH, null, -1, -1));
+        }
+        generated.set(forward.seen.size() + backward.seen.size());
+
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            Frontier frontier = i % 2 == 0 ? forward : backward;
+            threads[i] = new Thread(() -> search(frontier), "bidirectional-solver-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    finish(Solution.Status.TIMED_OUT, null, 0);
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        peakMemory = Math.max(peakMemory, SearchSpace.usedMemory());
+        return new Solution(status, moves, numPushes, expanded.get(), generated.get(), System.nanoTime() - start,
+                peakMemory);
+    }
+
+    /**
+     * Records the outcome of the search, unless another thread already did, and stops every thread
+     */
+    private synchronized void finish(Solution.Status status, String moves, int numPushes) {
+        if (done)
+            return;
+        this.status = status;
+        this.moves = moves;
+        this.numPushes = numPushes;
+        done = true;
+    }
+
+    /**
+     * Expands nodes of one direction until the search is done
+     */
+    private void search(Frontier frontier) {
+        Reachability reachability = new Reachability(board);
+        DeadlockEngine deadlocks = DeadlockEngine.forSearch(board);
+        int[] moves = new int[space.size * offsets.length];
+        long sinceCheck = 0;
+
+        while (!done) {
+            frontier.busy.incrementAndGet();
+            Node node = frontier.open.poll();
+            if (node == null) {
+                //no nodes left, and no other thread of this direction is expanding one which could add more
+                if (frontier.busy.decrementAndGet() == 0 && frontier.open.isEmpty())
+                    finish(Solution.Status.UNSOLVABLE, null, 0);
+                Thread.yield();
+                continue;
+            }
+            try {
+                //skip nodes which were reached again with fewer pushes after being queued
+                if (frontier.seen.get(node.hash) != node)
+                    continue;
+                if (frontier.isForward && space.isSolved(node.crates)) {
+                    finish(Solution.Status.SOLVED, join(reachability, node, null), node.g);
+                    return;
+                }
+                expand(frontier, node, reachability, deadlocks, moves);
+            } finally {
+                frontier.busy.decrementAndGet();
+            }
+
+            if (++sinceCheck == CHECK_INTERVAL) {
+                expanded.addAndGet(sinceCheck);
+                sinceCheck = 0;
+                if (System.nanoTime() - start > timeLimitNanos)
+                    finish(Solution.Status.TIMED_OUT, null, 0);
+                if (generated.get() > maxNodes)
+                    finish(Solution.Status.OUT_OF_MEMORY, null, 0);
+            }
+        }
+        expanded.addAndGet(sinceCheck);
+    }
+
+    /**
+     * Generates the children of a node: its pushes in the forward direction, or its pulls in the backward one.
+     * Every child is recorded with the same square and direction as the forward push between the two positions,
+     * so both halves of a solution are replayed the same way.
+     */
+    private void expand(Frontier frontier, Node node, Reachability reachability, DeadlockEngine deadlocks,
+                        int[] moves) {
+        long[] crates = node.crates;
+        int[] distances = frontier.distances;
+        int numDirections = offsets.length;
+
+        //collect the legal moves first, normalizing the children reuses the reachability buffers
+        reachability.compute(crates, node.player);
+        int numMoves = 0;
+        for (int crate = SearchSpace.nextCrate(crates, 0); crate >= 0;
+             crate = SearchSpace.nextCrate(crates, crate + 1)) {
+            for (int dir = 0; dir < numDirections; dir++) {
+                int offset = offsets[dir];
+                //pushed from crate - offset onto crate + offset, or pulled from crate - offset onto crate - 2 offset
+                int to = frontier.isForward ? crate + offset : crate - offset;
+                int playerTo = frontier.isForward ? crate : crate - 2 * offset;
+                int free = frontier.isForward ? to : playerTo;
+                if (reachability.isReachable(crate - offset) && !walls[free] && !Bits.get(crates, free)
+                        && distances[to] != SearchSpace.UNREACHABLE)
+                    moves[numMoves++] = crate * numDirections + dir;
+            }
+        }
+
+        for (int i = 0; i < numMoves; i++) {
+            int crate = moves[i] / numDirections;
+            int dir = moves[i] % numDirections;
+            int offset = offsets[dir];
+            int to = frontier.isForward ? crate + offset : crate - offset;
+            int playerTo = frontier.isForward ? crate : crate - 2 * offset;
+
+            long[] childCrates = crates.clone();
+            Bits.clear(childCrates, crate);
+            Bits.set(childCrates, to);
+            if (frontier.isForward && deadlocks.isDeadlocked(childCrates, to, crate))
+                continue;
+
+            long childCrateHash = node.crateHash ^ space.zobrist.crateKey(crate) ^ space.zobrist.crateKey(to);
+            int childPlayer = reachability.compute(childCrates, playerTo);
+            long childHash = childCrateHash ^ space.zobrist.playerKey(childPlayer);
+            int childH = node.h - distances[crate] + distances[to];
+            int pushedFrom = frontier.isForward ? crate : to;
+            Node child = new Node(childCrates, childCrateHash, childPlayer, childHash, node.g + 1, childH, node,
+                    pushedFrom, dir);
+            if (!frontier.add(child))
+                continue;
+            generated.incrementAndGet();
+
+            Node meeting = frontier.other.seen.get(childHash);
+            if (meeting != null && meeting.player == childPlayer && Arrays.equals(meeting.crates, childCrates)) {
+                Node forwardNode = frontier.isForward ? child : meeting;
+                Node backwardNode = frontier.isForward ? meeting : child;
+                finish(Solution.Status.SOLVED, join(reachability, forwardNode, backwardNode),
+                        forwardNode.g + backwardNode.g);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replays the pushes from the start to the forward node, and then the pulls from the backward node to the goal
+     * as pushes, inserting the walks between them.
+     *
+     * @param backwardNode The node of the backward search at the same position, or null if the forward node is
+     *                     solved
+     */
+    private String join(Reachability reachability, Node forwardNode, Node backwardNode) {
+        ArrayDeque<Node> path = new ArrayDeque<>();
+        for (Node n = forwardNode; n.parent != null; n = n.parent) {
+            path.push(n);
+        }
+
+        StringBuilder moves = new StringBuilder();
+        int player = board.getPlayer();
+        for (Node n : path) {
+            space.appendPush(moves, reachability, n.parent.crates, player, n.pushedFrom, n.pushDir);
+            player = n.pushedFrom;
+        }
+        for (Node n = backwardNode; n != null && n.parent != null; n = n.parent) {
+            space.appendPush(moves, reachability, n.crates, player, n.pushedFrom, n.pushDir);
+            player = n.pushedFrom;
+        }
+        return moves.toString();
+    }
+
+    /**
+     * The open nodes and reached positions of one direction, shared by its threads
+     */
+    private static class Frontier {
+        final boolean isForward;
+        //the lower bound on the pushes from a square to where a crate must end up in this direction
+        final int[] distances;
+        final PriorityBlockingQueue<Node> open = new PriorityBlockingQueue<>(1024,
+                (a, b) -> a.f() != b.f() ? Integer.compare(a.f(), b.f()) : Integer.compare(a.h, b.h));
+        //the node each position was reached with in the fewest moves
+        final ConcurrentHashMap<Long, Node> seen = new ConcurrentHashMap<>();
+        //the number of threads holding a node they have not finished expanding
+        final AtomicInteger busy = new AtomicInteger();
+        Frontier other;
+
+        Frontier(boolean isForward, int[] distances) {
+            this.isForward = isForward;
+            this.distances = distances;
+        }
+
+        /**
+         * Records a node and queues it, unless its position was already reached in as few moves
+         *
+         * @return Whether the node was added
+         */
+        boolean add(Node node) {
+            Node existing = seen.putIfAbsent(node.hash, node);
+            while (existing != null) {
+                if (existing.g <= node.g)
+                    return false;
+                if (seen.replace(node.hash, existing, node))
+                    break;
+                existing = seen.putIfAbsent(node.hash, node);
+            }
+            open.add(node);
+            return true;
+        }
+    }
+}
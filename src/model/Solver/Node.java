@@ -0,0 +1,39 @@
+package model.Solver;
+
+/**
+ * A search node: a crate configuration together with the normalized player position, i.e. the top-left square
+ * of the region the player can reach without pushing. Positions are identified by their Zobrist hash, so nodes
+ * describing the same position share a hash regardless of how they were reached.
+ */
+class Node {
+    final long[] crates;
+    final long crateHash;
+    final int player;
+    final long hash;
+    final int g;
+    final int h;
+    final Node parent;
+    //the square the pushed crate was on before the push, and the direction it was pushed in
+    final int pushedFrom;
+    final int pushDir;
+    //the state of the node's crate to destination assignment, see AssignmentHeuristic, dropped once the node has
+    //been expanded
+    int[] assignment;
+
+    Node(long[] crates, long crateHash, int player, long hash, int g, int h, Node parent, int pushedFrom,
+         int pushDir) {
+        this.crates = crates;
+        this.crateHash = crateHash;
+        this.player = player;
+        this.hash = hash;
+        this.g = g;
+        this.h = h;
+        this.parent = parent;
+        this.pushedFrom = pushedFrom;
+        this.pushDir = pushDir;
+    }
+
+    int f() {
+        return g + h;
+    }
+}
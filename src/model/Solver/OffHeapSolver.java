@@ -0,0 +1,304 @@
+package model.Solver;
+
+import model.Deadlock.DeadlockEngine;
+import model.Map.Bits;
+import model.Map.Board;
+import model.Map.Map;
+import model.Map.Reachability;
+import model.Map.Zobrist;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A push-optimal A* search like {@link Solver}, for searches too large for the heap. Every state is a record
+ * in a {@link StateStore} outside the heap rather than a node object, and the open list is a bucket queue threaded
+ * through the records' link fields, so the heap holds only the fixed-size transposition table and the search's
+ * buffers however many states are stored. Expanding a state does not allocate either.
+ * <p>
+ * The crate assignment of {@link AssignmentHeuristic} is solved again when a state is expanded instead of being
+ * stored with it, which keeps a record down to its crates and a few fields.
+ * <p>
+ * States with the same f and h are expanded in the order they were queued, while the priority queue of
+ * {@link Solver} takes them in no particular order. Both find solutions with the same number of pushes, but they
+ * can expand a different number of states to get there, more or fewer depending on the level.
+ * <p>
+ * The number of states is bounded by the store's byte budget, see {@link #setStateStore(long, Path)}; the search
+ * ends with {@link Solution.Status#OUT_OF_MEMORY} once it is full.
+ */
+public class OffHeapSolver {
+    private static final int UNREACHABLE = SearchSpace.UNREACHABLE;
+    private static final int TIME_CHECK_INTERVAL = 4096;
+    private static final long DEFAULT_STORE_BYTES = 1L << 30;
+    private static final long DEFAULT_TABLE_BYTES = 64L << 20;
+
+    private final SearchSpace space;
+    private final Board board;
+    private final Zobrist zobrist;
+    private final int[] offsets;
+    private final boolean[] walls;
+    private final int[] minPushes;
+    private final Reachability reachability;
+    private final DeadlockEngine deadlocks;
+    private final AssignmentHeuristic heuristic;
+    private final int[] pushes;
+    private final int[] assignment;
+    private final long[] crates;
+    private final long[] childCrates;
+
+    private long storeBytes = DEFAULT_STORE_BYTES;
+    private Path spillDirectory;
+    private long tableBytes = DEFAULT_TABLE_BYTES;
+    private TranspositionTable.ReplacementPolicy replacementPolicy = TranspositionTable.ReplacementPolicy.KEEP_LOWER;
+    private long timeLimitNanos = Long.MAX_VALUE;
+
+    //the open list: heads[f][h] is the first state queued with that f and h, which links to the one queued after
+    //it, up to tails[f][h]
+    private long[][] heads = new long[0][];
+    private long[][] tails = new long[0][];
+    private int minF;
+    private long numOpen;
+
+    /**
+     * @param map The map to solve. The solver works on a copy, starting from the map's current position.
+     */
+    public OffHeapSolver(Map map) {
+        this.space = new SearchSpace(map);
+        this.board = space.board;
+        this.zobrist = space.zobrist;
+        this.offsets = space.offsets;
+        this.walls = space.walls;
+        this.minPushes = space.minPushes;
+        reachability = new Reachability(board);
+        deadlocks = DeadlockEngine.forSearch(board);
+        heuristic = new AssignmentHeuristic(space);
+        pushes = new int[space.size * offsets.length];
+        assignment = new int[heuristic.stateLength()];
+        crates = new long[Bits.words(space.size)];
+        childCrates = new long[crates.length];
+    }
+
+    /**
+     * Configures where the next call to {@link #solve()} keeps its states.
+     *
+     * @param maxBytes       The most memory the states may take up
+     * @param spillDirectory A directory for a memory-mapped file holding the states, which lets the operating
+     *                       system page them out to disk, or null to keep them in direct memory. Direct memory is
+     *                       limited by {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size.
+     */
+    public void setStateStore(long maxBytes, Path spillDirectory) {
+        this.storeBytes = maxBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Configures the transposition table used by the next call to {@link #solve()}, see
+     * {@link Solver#setTranspositionTable(long, TranspositionTable.ReplacementPolicy)}. It is the only part of the
+     * search on the heap which grows with the level's difficulty, so it is sized up front.
+     *
+     * @param maxBytes The memory budget of the table
+     * @param policy   The replacement policy once the table fills up
+     */
+    public void setTranspositionTable(long maxBytes, TranspositionTable.ReplacementPolicy policy) {
+        this.tableBytes = maxBytes;
+        this.replacementPolicy = policy;
+    }
+
+    /**
+     * @param timeLimitMillis The longest the next call to {@link #solve()} may run for, in milliseconds, or
+     *                        {@link Long#MAX_VALUE} for no limit
+     */
+    public void setTimeLimit(long timeLimitMillis) {
+        this.timeLimitNanos = timeLimitMillis == Long.MAX_VALUE ? Long.MAX_VALUE : timeLimitMillis * 1_000_000;
+    }
+
+    /**
+     * Runs the search until a solution is found, the search space is exhausted, the time limit is reached or the
+     * state store is full.
+     *
+     * @return The solution, or a result with status {@link Solution.Status#UNSOLVABLE},
+     * {@link Solution.Status#TIMED_OUT} or {@link Solution.Status#OUT_OF_MEMORY}. Its peak memory is that of the
+     * heap and does not include the states.
+     * @throws UncheckedIOException when the spill file cannot be created or mapped
+     */
+    public Solution solve() {
+        try (StateStore store = new StateStore(crates.length, storeBytes, spillDirectory)) {
+            return solve(store);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            heads = new long[0][];
+            tails = new long[0][];
+        }
+    }
+
+    private Solution solve(StateStore store) throws IOException {
+        long start = System.nanoTime();
+        long peakMemory = SearchSpace.usedMemory();
+        long expanded = 0;
+        long generated = 1;
+
+        long[] startCrates = board.copyCrates();
+        int h = heuristic.evaluate(startCrates);
+        if (h == UNREACHABLE)
+            return new Solution(Solution.Status.UNSOLVABLE, null, 0, 0, 1, System.nanoTime() - start, peakMemory);
+
+        long crateHash = board.getCrateHash();
+        int player = reachability.compute(startCrates, board.getPlayer());
+        long root = store.add(startCrates, crateHash, player, 0, StateStore.NONE, -1, -1);
+        if (root == StateStore.NONE)
+            return new Solution(Solution.Status.OUT_OF_MEMORY, null, 0, 0, 1, System.nanoTime() - start, peakMemory);
+        TranspositionTable seen = new TranspositionTable(tableBytes, replacementPolicy);
+        seen.put(crateHash ^ zobrist.playerKey(player), 0);
+        minF = Integer.MAX_VALUE;
+        numOpen = 0;
+        enqueue(store, root, h, h);
+
+        while (numOpen > 0) {
+            //find the lowest f, then the lowest h, and take the state queued first with them
+            while (!hasOpen(minF))
+                minF++;
+            long[] bucket = heads[minF];
+            int stateH = 0;
+            while (bucket[stateH] == StateStore.NONE)
+                stateH++;
+            long state = bucket[stateH];
+            bucket[stateH] = store.getNext(state);
+            if (bucket[stateH] == StateStore.NONE)
+                tails[minF][stateH] = StateStore.NONE;
+            numOpen--;
+
+            int g = store.getG(state);
+            long stateCrateHash = store.getCrateHash(state);
+            int statePlayer = store.getPlayer(state);
+            int bestG = seen.get(stateCrateHash ^ zobrist.playerKey(statePlayer));
+            if (bestG >= 0 && bestG < g)
+                continue;
+
+            store.getCrates(state, crates);
+            if (space.isSolved(crates))
+                return new Solution(Solution.Status.SOLVED, reconstruct(store, state), g, expanded, generated,
+                        System.nanoTime() - start, Math.max(peakMemory, SearchSpace.usedMemory()));
+
+            expanded++;
+            if (expanded % TIME_CHECK_INTERVAL == 0) {
+                peakMemory = Math.max(peakMemory, SearchSpace.usedMemory());
+                if (System.nanoTime() - start > timeLimitNanos || Thread.currentThread().isInterrupted())
+                    return new Solution(Solution.Status.TIMED_OUT, null, 0, expanded, generated,
+                            System.nanoTime() - start, peakMemory);
+            }
+
+            if (heuristic.evaluate(crates) == UNREACHABLE)
+                continue;
+            heuristic.save(assignment);
+
+            //collect the legal pushes first, normalizing the children reuses the reachability buffers
+            reachability.compute(crates, statePlayer);
+            int numPushes = 0;
+            for (int crate = SearchSpace.nextCrate(crates, 0); crate >= 0; crate = SearchSpace.nextCrate(crates, crate + 1)) {
+                for (int dir = 0; dir < offsets.length; dir++) {
+                    int offset = offsets[dir];
+                    int to = crate + offset;
+                    if (reachability.isReachable(crate - offset) && !walls[to] && !Bits.get(crates, to)
+                            && minPushes[to] != UNREACHABLE)
+                        pushes[numPushes++] = crate * offsets.length + dir;
+                }
+            }
+
+            for (int i = 0; i < numPushes; i++) {
+                int crate = pushes[i] / offsets.length;
+                int dir = pushes[i] % offsets.length;
+                int to = crate + offsets[dir];
+
+                System.arraycopy(crates, 0, childCrates, 0, crates.length);
+                Bits.clear(childCrates, crate);
+                Bits.set(childCrates, to);
+                if (deadlocks.isDeadlocked(childCrates, to, crate))
+                    continue;
+
+                long childCrateHash = stateCrateHash ^ zobrist.crateKey(crate) ^ zobrist.crateKey(to);
+                int childPlayer = reachability.compute(childCrates, crate);
+                long childHash = childCrateHash ^ zobrist.playerKey(childPlayer);
+                int childG = g + 1;
+                int existing = seen.get(childHash);
+                if (existing >= 0 && existing <= childG)
+                    continue;
+                seen.put(childHash, childG);
+
+                int childH = heuristic.update(assignment, crate, to);
+                if (childH == UNREACHABLE)
+                    continue;
+                long child = store.add(childCrates, childCrateHash, childPlayer, childG, state, crate, dir);
+                if (child == StateStore.NONE)
+                    return new Solution(Solution.Status.OUT_OF_MEMORY, null, 0, expanded, generated,
+                            System.nanoTime() - start, Math.max(peakMemory, SearchSpace.usedMemory()));
+                enqueue(store, child, childG + childH, childH);
+                generated++;
+            }
+        }
+
+        return new Solution(Solution.Status.UNSOLVABLE, null, 0, expanded, generated, System.nanoTime() - start,
+                Math.max(peakMemory, SearchSpace.usedMemory()));
+    }
+
+    private boolean hasOpen(int f) {
+        if (f >= heads.length || heads[f] == null)
+            return false;
+        for (long head : heads[f]) {
+            if (head != StateStore.NONE)
+                return true;
+        }
+        return false;
+    }
+
+    private void enqueue(StateStore store, long state, int f, int h) {
+        if (f >= heads.length) {
+            heads = Arrays.copyOf(heads, Math.max(f + 1, heads.length * 2));
+            tails = Arrays.copyOf(tails, heads.length);
+        }
+        if (heads[f] == null || h >= heads[f].length) {
+            heads[f] = grow(heads[f], h + 1);
+            tails[f] = grow(tails[f], h + 1);
+        }
+        if (heads[f][h] == StateStore.NONE)
+            heads[f][h] = state;
+        else
+            store.setNext(tails[f][h], state);
+        tails[f][h] = state;
+        numOpen++;
+        minF = Math.min(minF, f);
+    }
+
+    private static long[] grow(long[] bucket, int minLength) {
+        int oldLength = bucket == null ? 0 : bucket.length;
+        long[] grown = Arrays.copyOf(bucket == null ? new long[0] : bucket, Math.max(minLength, oldLength * 2));
+        Arrays.fill(grown, oldLength, grown.length, StateStore.NONE);
+        return grown;
+    }
+
+    /**
+     * Replays the pushes from the root to the goal state, inserting the walks between them.
+     */
+    private String reconstruct(StateStore store, long goal) {
+        int length = 0;
+        for (long s = goal; store.getParent(s) != StateStore.NONE; s = store.getParent(s)) {
+            length++;
+        }
+        long[] path = new long[length];
+        for (long s = goal; store.getParent(s) != StateStore.NONE; s = store.getParent(s)) {
+            path[--length] = s;
+        }
+
+        StringBuilder moves = new StringBuilder();
+        long[] parentCrates = new long[crates.length];
+        int player = board.getPlayer();
+        for (long s : path) {
+            store.getCrates(store.getParent(s), parentCrates);
+            space.appendPush(moves, reachability, parentCrates, player, store.getPushedFrom(s), store.getPushDir(s));
+            player = store.getPushedFrom(s);
+        }
+        return moves.toString();
+    }
+}
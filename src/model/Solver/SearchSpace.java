@@ -0,0 +1,210 @@
+package model.Solver;
+
+import model.Map.Bits;
+import model.Map.Board;
+import model.Map.Map;
+import model.Map.Reachability;
+import model.Map.Zobrist;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * The static part of a level as seen by the solvers: its walls, destinations, direction offsets and push distance
+ * tables, plus the move rules and helpers which only depend on them. It is immutable after construction, so any
+ * number of search threads can share one.
+ */
+class SearchSpace {
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+    private static final char[] KEYS = new char[Map.Direction.values().length];
+
+    static {
+        KEYS[Map.Direction.UP.ordinal()] = 'w';
+        KEYS[Map.Direction.LEFT.ordinal()] = 'a';
+        KEYS[Map.Direction.DOWN.ordinal()] = 's';
+        KEYS[Map.Direction.RIGHT.ordinal()] = 'd';
+    }
+
+    final Board board;
+    final Zobrist zobrist;
+    final int size;
+    final int[] offsets;
+    final boolean[] walls;
+    final long[] dests;
+    //minimum number of pushes to get a crate from a square onto any destination, or UNREACHABLE if it is dead.
+    //With more crates than destinations a spare crate may end up anywhere, so no square is dead and these are 0.
+    final int[] minPushes;
+    //the same for each destination on its own, in the order of the dests bitset: the pushes from square s onto
+    //destination j are at s * numGoals + j, so the distances of one square to every destination are adjacent
+    final int numGoals;
+    final int[] goalDistances;
+    final int numCrates;
+    //whether the crates are only some of the level's, as in a sub-problem, so a position is solved once every crate
+    //is on a destination rather than once every destination has a crate
+    final boolean partial;
+
+    /**
+     * @param map The level, whose current position is the start of the search. It is copied.
+     */
+    SearchSpace(Map map) {
+        this(map.getBoard());
+    }
+
+    /**
+     * @param board The level in its start position. It is copied.
+     */
+    SearchSpace(Board board) {
+        this(board, false);
+    }
+
+    /**
+     * @param board   The level in its start position. It is copied.
+     * @param partial Whether the board only has some of the level's crates, see {@link Solver#forSubProblem(Board)}
+     */
+    SearchSpace(Board board, boolean partial) {
+        this.board = new Board(board);
+        this.partial = partial;
+        this.zobrist = board.getZobrist();
+        this.size = board.getSize();
+
+        Map.Direction[] directions = Map.Direction.values();
+        offsets = new int[directions.length];
+        for (Map.Direction d : directions) {
+            offsets[d.ordinal()] = board.offset(d);
+        }
+
+        walls = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            walls[i] = board.isWall(i);
+        }
+        dests = board.copyDests();
+        numCrates = board.getNumCrates();
+        minPushes = board.hasSpareCrates() && !partial ? new int[size] : pushDistances(dests, true);
+
+        numGoals = Bits.count(dests);
+        goalDistances = new int[size * numGoals];
+        long[] goal = new long[dests.length];
+        int j = 0;
+        for (int dest = nextCrate(dests, 0); dest >= 0; dest = nextCrate(dests, dest + 1), j++) {
+            Bits.set(goal, dest);
+            int[] distance = pushDistances(goal, true);
+            Bits.clear(goal, dest);
+            for (int square = 0; square < size; square++) {
+                goalDistances[square * numGoals + j] = distance[square];
+            }
+        }
+    }
+
+    /**
+     * For every square, computes the minimum number of single-crate moves between it and any of the given squares,
+     * ignoring other crates. Moving a crate from s to s + offset by pushing needs the player at s - offset, and by
+     * pulling the player at s + 2 * offset.
+     *
+     * @param squares The squares to measure from, as a bitset
+     * @param toward  Whether to measure pushes from every square to the given ones, rather than pushes from the
+     *                given squares to every square
+     * @return The distances, or UNREACHABLE
+     */
+    int[] pushDistances(long[] squares, boolean toward) {
+        int[] result = new int[size];
+        Arrays.fill(result, UNREACHABLE);
+
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            if (Bits.get(squares, i)) {
+                result[i] = 0;
+                pending.add(i);
+            }
+        }
+
+        while (!pending.isEmpty()) {
+            int square = pending.poll();
+            for (int offset : offsets) {
+                //pull backwards from the targets, or push forwards from the sources
+                int to = toward ? square - offset : square + offset;
+                int playerAt = toward ? to - offset : square - offset;
+                if (walls[to] || walls[playerAt] || result[to] != UNREACHABLE)
+                    continue;
+                result[to] = result[square] + 1;
+                pending.add(to);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param crates   A crate bitset
+     * @param distance A distance table from {@link #pushDistances(long[], boolean)}
+     * @return The sum of the distances of the crates, or UNREACHABLE if any crate is unreachable
+     */
+    int sumDistances(long[] crates, int[] distance) {
+        int sum = 0;
+        for (int crate = nextCrate(crates, 0); crate >= 0; crate = nextCrate(crates, crate + 1)) {
+            if (distance[crate] == UNREACHABLE)
+                return UNREACHABLE;
+            sum += distance[crate];
+        }
+        return sum;
+    }
+
+    /**
+     * @param crates A crate bitset
+     * @return Whether every destination has a crate on it, the win condition of the game, see
+     * {@link Board#isSolved()}. Spare crates may be anywhere. For a partial space, whether every crate is on a
+     * destination instead.
+     */
+    boolean isSolved(long[] crates) {
+        for (int w = 0; w < crates.length; w++) {
+            if ((partial ? crates[w] & ~dests[w] : dests[w] & ~crates[w]) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Appends the push of a crate, walking the player behind it first.
+     *
+     * @param moves        The moves so far, as w/a/s/d chars
+     * @param reachability Buffers for the walk
+     * @param crates       The crates before the push
+     * @param player       The square the player is on
+     * @param pushedFrom   The square of the crate before the push
+     * @param pushDir      The direction of the push
+     */
+    void appendPush(StringBuilder moves, Reachability reachability, long[] crates, int player, int pushedFrom,
+                    int pushDir) {
+        int to = pushedFrom - offsets[pushDir];
+        reachability.compute(crates, player);
+        int start = moves.length();
+        for (int square = to; square != player; square = reachability.getPrevious(square)) {
+            int step = square - reachability.getPrevious(square);
+            for (int dir = 0; dir < offsets.length; dir++) {
+                if (offsets[dir] == step) {
+                    moves.append(KEYS[dir]);
+                    break;
+                }
+            }
+        }
+        //the walk was appended backwards
+        moves.replace(start, moves.length(), new StringBuilder(moves.substring(start)).reverse().toString());
+        moves.append(KEYS[pushDir]);
+    }
+
+    static int nextCrate(long[] crates, int from) {
+        int w = from >>> 6;
+        if (w >= crates.length)
+            return -1;
+        long word = crates[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == crates.length)
+                return -1;
+            word = crates[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
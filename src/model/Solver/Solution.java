@@ -0,0 +1,92 @@
+package model.Solver;
+
+/**
+ * The result of a {@link Solver} run, together with statistics about the search.
+ */
+public class Solution {
+    private final Status status;
+    private final String moves;
+    private final int numPushes;
+    private final long nodesExpanded;
+    private final long nodesGenerated;
+    private final long elapsedNanos;
+    private final long peakMemoryBytes;
+
+    Solution(Status status, String moves, int numPushes, long nodesExpanded, long nodesGenerated,
+             long elapsedNanos, long peakMemoryBytes) {
+        this.status = status;
+        this.moves = moves;
+        this.numPushes = numPushes;
+        this.nodesExpanded = nodesExpanded;
+        this.nodesGenerated = nodesGenerated;
+        this.elapsedNanos = elapsedNanos;
+        this.peakMemoryBytes = peakMemoryBytes;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    /**
+     * @return The moves as w/a/s/d chars which can be replayed with {@link model.GameLevel#makeMove(char)},
+     * or null if the level was not solved
+     */
+    public String getMoves() {
+        return moves;
+    }
+
+    public int getNumMoves() {
+        return moves == null ? 0 : moves.length();
+    }
+
+    public int getNumPushes() {
+        return numPushes;
+    }
+
+    public long getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    public long getNodesGenerated() {
+        return nodesGenerated;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public double getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodesExpanded * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return The highest heap usage sampled during the search, in bytes
+     */
+    public long getPeakMemoryBytes() {
+        return peakMemoryBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d moves, %d pushes, %d nodes expanded in %d ms (%.0f nodes/s, peak %d MB)",
+                status, getNumMoves(), numPushes, nodesExpanded, getElapsedMillis(), getNodesPerSecond(),
+                peakMemoryBytes >> 20);
+    }
+
+    public enum Status {
+        SOLVED,
+        UNSOLVABLE,
+        /**
+         * The search ran out of time, or its thread was interrupted, before finding a solution
+         */
+        TIMED_OUT,
+        /**
+         * The search would have exceeded its memory limit before finding a solution
+         */
+        OUT_OF_MEMORY
+    }
+}
@@ -0,0 +1,259 @@
+package model.Solver;
+
+import model.Deadlock.DeadlockEngine;
+import model.Map.Bits;
+import model.Map.Board;
+import model.Map.Map;
+import model.Map.Reachability;
+import model.Map.Zobrist;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+
+/**
+ * A push-optimal A* solver. The search runs over crate configurations only: the player position is normalized to
+ * the top-left square of the region it can reach without pushing, so positions which only differ by walking are
+ * treated as the same node. The heuristic is the cheapest assignment of the crates to distinct destinations by push
+ * distance, ignoring the other crates, which never overestimates; see {@link AssignmentHeuristic}.
+ * <p>
+ * Positions already reached are recorded by Zobrist hash in a bounded {@link TranspositionTable} together with the
+ * fewest pushes they were reached with, so duplicate detection is O(1) and memory use is capped.
+ * <p>
+ * A search can be bounded in time and memory with {@link #setLimits(long, long)}. Solvers do not share state, so
+ * several can run on different threads at once.
+ */
+public class Solver {
+    private static final int UNREACHABLE = SearchSpace.UNREACHABLE;
+    private static final int MEMORY_SAMPLE_INTERVAL = 4096;
+    private static final long DEFAULT_TABLE_BYTES = 16L << 20;
+    //estimated size of a node without its crates array, plus its queue slot
+    static final int NODE_BYTES = 96;
+
+    private final SearchSpace space;
+    private final Board board;
+    private final Zobrist zobrist;
+    private final int[] offsets;
+    private final boolean[] walls;
+    private final int[] minPushes;
+    private final Reachability reachability;
+    private final DeadlockEngine deadlocks;
+    private final AssignmentHeuristic heuristic;
+    private final int[] pushes;
+
+    private long tableBytes = DEFAULT_TABLE_BYTES;
+    private TranspositionTable.ReplacementPolicy replacementPolicy = TranspositionTable.ReplacementPolicy.KEEP_LOWER;
+    private long timeLimitNanos = Long.MAX_VALUE;
+    private long memoryLimitBytes = Long.MAX_VALUE;
+
+    /**
+     * @param map The map to solve. The solver works on a copy, starting from the map's current position.
+     */
+    public Solver(Map map) {
+        this(new SearchSpace(map));
+    }
+
+    /**
+     * @param board The board to solve, e.g. one built without cells for a sub-problem. The solver works on a copy,
+     *              starting from the board's current position.
+     */
+    public Solver(Board board) {
+        this(new SearchSpace(board));
+    }
+
+    /**
+     * Creates a solver for a sub-problem of a level, e.g. the crates of one area on their own. The board has the
+     * level's walls and destinations but only some of its crates, so a position is solved once every crate is on a
+     * destination, rather than once every destination has a crate.
+     *
+     * @param board The sub-problem in its start position. The solver works on a copy.
+     * @return The solver
+     */
+    public static Solver forSubProblem(Board board) {
+        return new Solver(new SearchSpace(board, true));
+    }
+
+    Solver(SearchSpace space) {
+        this.space = space;
+        this.board = space.board;
+        this.zobrist = space.zobrist;
+        this.offsets = space.offsets;
+        this.walls = space.walls;
+        this.minPushes = space.minPushes;
+        reachability = new Reachability(board);
+        deadlocks = DeadlockEngine.forSearch(board);
+        heuristic = new AssignmentHeuristic(space);
+        pushes = new int[space.size * offsets.length];
+    }
+
+    /**
+     * @return The engine which prunes deadlocked children, with the statistics of its detectors
+     */
+    public DeadlockEngine getDeadlockEngine() {
+        return deadlocks;
+    }
+
+    /**
+     * Configures the transposition table used by the next call to {@link #solve()}.
+     *
+     * @param maxBytes The memory budget of the table
+     * @param policy   The replacement policy once the table fills up
+     */
+    public void setTranspositionTable(long maxBytes, TranspositionTable.ReplacementPolicy policy) {
+        this.tableBytes = maxBytes;
+        this.replacementPolicy = policy;
+    }
+
+    /**
+     * Bounds the next call to {@link #solve()}. The time is checked periodically, and memory is estimated from the
+     * number of nodes created plus the transposition table, which is shrunk to fit if needed. Use
+     * {@link Long#MAX_VALUE} for no limit.
+     *
+     * @param timeLimitMillis  The longest the search may run for, in milliseconds
+     * @param memoryLimitBytes The most memory the search may use, in bytes
+     */
+    public void setLimits(long timeLimitMillis, long memoryLimitBytes) {
+        this.timeLimitNanos = timeLimitMillis == Long.MAX_VALUE ? Long.MAX_VALUE : timeLimitMillis * 1_000_000;
+        this.memoryLimitBytes = memoryLimitBytes;
+    }
+
+    /**
+     * Runs the search until a solution is found, the search space is exhausted or a limit is reached.
+     *
+     * @return The solution, or a result with status {@link Solution.Status#UNSOLVABLE},
+     * {@link Solution.Status#TIMED_OUT} or {@link Solution.Status#OUT_OF_MEMORY}
+     */
+    public Solution solve() {
+        return solve(board.copyCrates(), board.getPlayer());
+    }
+
+    /**
+     * Runs the search from another position of the same level, e.g. for each sub-problem of a
+     * {@link #forSubProblem(Board)} solver, which saves building the distance tables again.
+     *
+     * @param startCrates The crates of the position. The array is kept by the search and must not be modified.
+     * @param startPlayer The square of the player
+     * @return The solution, see {@link #solve()}
+     */
+    public Solution solve(long[] startCrates, int startPlayer) {
+        long start = System.nanoTime();
+        long peakMemory = SearchSpace.usedMemory();
+        long expanded = 0;
+        long generated = 1;
+
+        int h = heuristic.evaluate(startCrates);
+        if (h == UNREACHABLE)
+            return new Solution(Solution.Status.UNSOLVABLE, null, 0, 0, 1, System.nanoTime() - start, peakMemory);
+
+        long crateHash = 0;
+        for (int crate = SearchSpace.nextCrate(startCrates, 0); crate >= 0;
+             crate = SearchSpace.nextCrate(startCrates, crate + 1)) {
+            crateHash ^= zobrist.crateKey(crate);
+        }
+        int player = reachability.compute(startCrates, startPlayer);
+        Node root = new Node(startCrates, crateHash, player, crateHash ^ zobrist.playerKey(player), 0, h, null,
+                -1, -1);
+        root.assignment = heuristic.save();
+        PriorityQueue<Node> open = new PriorityQueue<>((a, b) -> a.f() != b.f() ? Integer.compare(a.f(), b.f())
+                : Integer.compare(a.h, b.h));
+        //the table gets at most a quarter of the memory limit, the nodes the rest
+        long table = Math.min(tableBytes, memoryLimitBytes / 4);
+        TranspositionTable seen = new TranspositionTable(table, replacementPolicy);
+        long nodeBytes = NODE_BYTES + 8L * startCrates.length + 4L * heuristic.stateLength();
+        long maxNodes = memoryLimitBytes == Long.MAX_VALUE ? Long.MAX_VALUE : (memoryLimitBytes - table) / nodeBytes;
+        open.add(root);
+        seen.put(root.hash, 0);
+
+        while (!open.isEmpty()) {
+            Node node = open.poll();
+            //skip nodes which were reached again with fewer pushes after being queued
+            int bestG = seen.get(node.hash);
+            if (bestG >= 0 && bestG < node.g)
+                continue;
+
+            if (space.isSolved(node.crates)) {
+                String moves = reconstruct(node, startPlayer);
+                return new Solution(Solution.Status.SOLVED, moves, node.g, expanded, generated,
+                        System.nanoTime() - start, Math.max(peakMemory, SearchSpace.usedMemory()));
+            }
+
+            expanded++;
+            if (expanded % MEMORY_SAMPLE_INTERVAL == 0) {
+                peakMemory = Math.max(peakMemory, SearchSpace.usedMemory());
+                if (System.nanoTime() - start > timeLimitNanos || Thread.currentThread().isInterrupted())
+                    return new Solution(Solution.Status.TIMED_OUT, null, 0, expanded, generated,
+                            System.nanoTime() - start, peakMemory);
+            }
+            if (generated > maxNodes)
+                return new Solution(Solution.Status.OUT_OF_MEMORY, null, 0, expanded, generated,
+                        System.nanoTime() - start, Math.max(peakMemory, SearchSpace.usedMemory()));
+
+            //collect the legal pushes first, normalizing the children reuses the reachability buffers
+            reachability.compute(node.crates, node.player);
+            long[] crates = node.crates;
+            int[] assignment = node.assignment;
+            node.assignment = null;
+            int numPushes = 0;
+            for (int crate = SearchSpace.nextCrate(crates, 0); crate >= 0; crate = SearchSpace.nextCrate(crates, crate + 1)) {
+                for (int dir = 0; dir < offsets.length; dir++) {
+                    int offset = offsets[dir];
+                    int to = crate + offset;
+                    if (reachability.isReachable(crate - offset) && !walls[to] && !Bits.get(crates, to)
+                            && minPushes[to] != UNREACHABLE)
+                        pushes[numPushes++] = crate * offsets.length + dir;
+                }
+            }
+
+            for (int i = 0; i < numPushes; i++) {
+                int crate = pushes[i] / offsets.length;
+                int dir = pushes[i] % offsets.length;
+                int to = crate + offsets[dir];
+
+                long[] childCrates = crates.clone();
+                Bits.clear(childCrates, crate);
+                Bits.set(childCrates, to);
+                if (deadlocks.isDeadlocked(childCrates, to, crate))
+                    continue;
+
+                long childCrateHash = node.crateHash ^ zobrist.crateKey(crate) ^ zobrist.crateKey(to);
+                int childPlayer = reachability.compute(childCrates, crate);
+                long childHash = childCrateHash ^ zobrist.playerKey(childPlayer);
+                int childG = node.g + 1;
+                int existing = seen.get(childHash);
+                if (existing >= 0 && existing <= childG)
+                    continue;
+                seen.put(childHash, childG);
+
+                //crates which can no longer all get to destinations of their own
+                int childH = heuristic.update(assignment, crate, to);
+                if (childH == UNREACHABLE)
+                    continue;
+                Node child = new Node(childCrates, childCrateHash, childPlayer, childHash, childG, childH, node, crate,
+                        dir);
+                child.assignment = heuristic.save();
+                open.add(child);
+                generated++;
+            }
+        }
+
+        return new Solution(Solution.Status.UNSOLVABLE, null, 0, expanded, generated, System.nanoTime() - start,
+                Math.max(peakMemory, SearchSpace.usedMemory()));
+    }
+
+    /**
+     * Replays the pushes from the root to the goal node, inserting the walks between them.
+     */
+    private String reconstruct(Node goal, int startPlayer) {
+        ArrayDeque<Node> path = new ArrayDeque<>();
+        for (Node n = goal; n.parent != null; n = n.parent) {
+            path.push(n);
+        }
+
+        StringBuilder moves = new StringBuilder();
+        int player = startPlayer;
+        for (Node n : path) {
+            space.appendPush(moves, reachability, n.parent.crates, player, n.pushedFrom, n.pushDir);
+            player = n.pushedFrom;
+        }
+        return moves.toString();
+    }
+}
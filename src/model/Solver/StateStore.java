@@ -0,0 +1,205 @@
+package model.Solver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * An append-only store of search states kept outside the Java heap, so storing hundreds of millions of them neither
+ * grows the heap nor gives the garbage collector anything to trace. A state is a fixed-size record holding its
+ * crate bitset, player square, push count, the push which led to it and its parent's index, plus a link field the
+ * search can use to chain states into lists. States are identified by their index, in the order they were added.
+ * <p>
+ * Records are packed into chunks of at most 16 MB, allocated as the store fills up, until the byte budget is
+ * reached. Chunks are direct buffers, which count against {@code -XX:MaxDirectMemorySize}, or with a spill
+ * directory pages of a memory-mapped temporary file, which the operating system writes out to disk under memory
+ * pressure. The file is deleted when the store is closed.
+ * <p>
+ * A store is not thread safe.
+ */
+class StateStore implements Closeable {
+    static final long NONE = -1;
+    private static final int MAX_CHUNK_BYTES = 1 << 24;
+
+    //the layout of a record
+    private static final int NEXT = 0;
+    private static final int PARENT = 8;
+    private static final int CRATE_HASH = 16;
+    private static final int PLAYER = 24;
+    private static final int G = 28;
+    private static final int PUSH = 32;
+    private static final int CRATES = 40;
+
+    private final int words;
+    private final int recordBytes;
+    private final int recordsPerChunk;
+    private final long maxRecords;
+    private final FileChannel file;
+    private final ArrayList<ByteBuffer> chunks = new ArrayList<>();
+    private long size;
+
+    /**
+     * @param words          The length of the crate bitsets
+     * @param maxBytes       The most memory the records may take up
+     * @param spillDirectory The directory to create the backing file in, or null to keep the records in direct
+     *                       buffers
+     * @throws IOException when the backing file cannot be created
+     */
+    StateStore(int words, long maxBytes, Path spillDirectory) throws IOException {
+        this.words = words;
+        this.recordBytes = CRATES + Long.BYTES * words;
+        this.recordsPerChunk = Math.max(1, MAX_CHUNK_BYTES / recordBytes);
+        this.maxRecords = maxBytes / recordBytes;
+        this.file = spillDirectory == null ? null : FileChannel.open(Files.createTempFile(spillDirectory, "states",
+                ".bin"), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Appends a state, with no link to another state.
+     *
+     * @param crates     The crate bitset
+     * @param crateHash  The Zobrist hash of the crates
+     * @param player     The normalized player square
+     * @param g          The number of pushes the state was reached with
+     * @param parent     The index of the state it was reached from, or {@link #NONE}
+     * @param pushedFrom The square of the pushed crate before the push, or -1
+     * @param pushDir    The direction of the push, or -1
+     * @return The index of the state, or {@link #NONE} if the store is full, or no more direct memory can be
+     * reserved
+     * @throws IOException when a chunk of the backing file cannot be mapped
+     */
+    long add(long[] crates, long crateHash, int player, int g, long parent, int pushedFrom, int pushDir)
+            throws IOException {
+        if (size == maxRecords)
+            return NONE;
+        int chunk = (int) (size / recordsPerChunk);
+        if (chunk == chunks.size()) {
+            ByteBuffer buffer = allocate(chunk);
+            if (buffer == null)
+                return NONE;
+            chunks.add(buffer);
+        }
+
+        long index = size++;
+        ByteBuffer buffer = chunks.get(chunk);
+        int at = offset(index);
+        buffer.putLong(at + NEXT, NONE);
+        buffer.putLong(at + PARENT, parent);
+        buffer.putLong(at + CRATE_HASH, crateHash);
+        buffer.putInt(at + PLAYER, player);
+        buffer.putInt(at + G, g);
+        buffer.putInt(at + PUSH, pushedFrom < 0 ? -1 : pushedFrom << 2 | pushDir);
+        for (int w = 0; w < words; w++) {
+            buffer.putLong(at + CRATES + Long.BYTES * w, crates[w]);
+        }
+        return index;
+    }
+
+    /**
+     * @return The new chunk, or null if the direct memory limit does not leave room for it
+     */
+    private ByteBuffer allocate(int chunk) throws IOException {
+        long first = (long) chunk * recordsPerChunk;
+        int bytes = (int) Math.min(recordsPerChunk, maxRecords - first) * recordBytes;
+        if (file != null)
+            return file.map(FileChannel.MapMode.READ_WRITE, first * recordBytes, bytes).order(ByteOrder.nativeOrder());
+        try {
+            return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        } catch (OutOfMemoryError e) {
+            //only the reservation failed, nothing else is affected
+            return null;
+        }
+    }
+
+    private ByteBuffer chunk(long index) {
+        return chunks.get((int) (index / recordsPerChunk));
+    }
+
+    private int offset(long index) {
+        return (int) (index % recordsPerChunk) * recordBytes;
+    }
+
+    /**
+     * @param index The state
+     * @param into  Receives the crate bitset of the state
+     */
+    void getCrates(long index, long[] into) {
+        ByteBuffer buffer = chunk(index);
+        int at = offset(index) + CRATES;
+        for (int w = 0; w < words; w++) {
+            into[w] = buffer.getLong(at + Long.BYTES * w);
+        }
+    }
+
+    long getCrateHash(long index) {
+        return chunk(index).getLong(offset(index) + CRATE_HASH);
+    }
+
+    int getPlayer(long index) {
+        return chunk(index).getInt(offset(index) + PLAYER);
+    }
+
+    int getG(long index) {
+        return chunk(index).getInt(offset(index) + G);
+    }
+
+    long getParent(long index) {
+        return chunk(index).getLong(offset(index) + PARENT);
+    }
+
+    /**
+     * @return The square of the pushed crate before the push which led to the state, or -1 for a root
+     */
+    int getPushedFrom(long index) {
+        int push = chunk(index).getInt(offset(index) + PUSH);
+        return push < 0 ? -1 : push >>> 2;
+    }
+
+    int getPushDir(long index) {
+        int push = chunk(index).getInt(offset(index) + PUSH);
+        return push < 0 ? -1 : push & 3;
+    }
+
+    /**
+     * @return The state linked to by the state, or {@link #NONE}
+     */
+    long getNext(long index) {
+        return chunk(index).getLong(offset(index) + NEXT);
+    }
+
+    void setNext(long index, long next) {
+        chunk(index).putLong(offset(index) + NEXT, next);
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * @return The bytes taken up by the chunks allocated so far
+     */
+    long getAllocatedBytes() {
+        long bytes = 0;
+        for (ByteBuffer chunk : chunks) {
+            bytes += chunk.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops the chunks and deletes the backing file. The memory is released once the chunks are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        chunks.clear();
+        size = 0;
+        if (file != null)
+            file.close();
+    }
+}
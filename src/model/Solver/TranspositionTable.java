@@ -0,0 +1,144 @@
+package model.Solver;
+
+import java.util.Arrays;
+
+/**
+ * A bounded hash table from 64-bit position hashes to int values, e.g. the fewest pushes a position has been
+ * reached with. It is open-addressed over primitive arrays, so it never allocates after construction and its
+ * size is fixed by a byte budget.
+ * <p>
+ * A key is looked for in a small window of slots after its home slot. When the window is full, the
+ * {@link ReplacementPolicy} decides whether an existing entry is evicted. Because entries can be lost, a miss only
+ * means the position has not been seen recently, which search code must tolerate.
+ */
+public class TranspositionTable {
+    private static final int BYTES_PER_ENTRY = Long.BYTES + Integer.BYTES;
+    private static final int PROBE_WINDOW = 8;
+    //0 marks an empty slot, so a key of 0 is stored as this instead
+    private static final long ZERO_KEY = 0x9E3779B97F4A7C15L;
+
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+    private final ReplacementPolicy policy;
+    private int size;
+    private long evictions;
+
+    /**
+     * @param maxBytes The memory budget for the table. The capacity is the largest power of two that fits.
+     * @param policy   What to do when a new key finds its probe window full
+     */
+    public TranspositionTable(long maxBytes, ReplacementPolicy policy) {
+        long entries = Math.max(PROBE_WINDOW, maxBytes / BYTES_PER_ENTRY);
+        int capacity = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        this.policy = policy;
+    }
+
+    /**
+     * @param key The position hash
+     * @return The value stored for the key, or -1 if it is not in the table
+     */
+    public int get(long key) {
+        long k = key == 0 ? ZERO_KEY : key;
+        int slot = home(k);
+        for (int i = 0; i < PROBE_WINDOW; i++) {
+            long stored = keys[slot];
+            if (stored == k)
+                return values[slot];
+            if (stored == 0)
+                return -1;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Stores or overwrites the value for a key.
+     *
+     * @param key   The position hash
+     * @param value A non-negative value
+     * @return Whether the value was stored. Only false when the window is full and the policy keeps the old entries.
+     */
+    public boolean put(long key, int value) {
+        long k = key == 0 ? ZERO_KEY : key;
+        int home = home(k);
+        int slot = home;
+        int victim = home;
+        for (int i = 0; i < PROBE_WINDOW; i++) {
+            long stored = keys[slot];
+            if (stored == k) {
+                values[slot] = value;
+                return true;
+            }
+            if (stored == 0) {
+                keys[slot] = k;
+                values[slot] = value;
+                size++;
+                return true;
+            }
+            if (values[slot] > values[victim])
+                victim = slot;
+            slot = (slot + 1) & mask;
+        }
+
+        switch (policy) {
+            case ALWAYS:
+                victim = home;
+                break;
+            case KEEP_LOWER:
+                if (values[victim] <= value)
+                    return false;
+                break;
+            case NEVER:
+                return false;
+        }
+        keys[victim] = k;
+        values[victim] = value;
+        evictions++;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+        evictions = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    private int home(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    /**
+     * Decides which entry, if any, makes room for a new key whose probe window is full
+     */
+    public enum ReplacementPolicy {
+        /**
+         * The new key always replaces the entry in its home slot
+         */
+        ALWAYS,
+        /**
+         * The new key replaces the entry with the highest value in the window, if the new value is lower. With
+         * push counts as values, this keeps the positions closest to the start.
+         */
+        KEEP_LOWER,
+        /**
+         * Existing entries are never replaced and the new key is dropped
+         */
+        NEVER
+    }
+}
@@ -3,21 +3,26 @@ package viewmodel;
 import javafx.application.Platform;
 import javafx.scene.control.Alert;
 import javafx.scene.media.Media;
+import javafx.scene.media.MediaException;
 import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
 import model.LevelManager;
 
-import java.io.File;
-import java.util.Collections;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * Handles audio related events.
+ * <p>
+ * Every sound effect is loaded once, into a fixed pool of players. Playing an effect takes the player which was
+ * started longest ago and restarts it, so at most that many instances of an effect sound at once, holding a key
+ * down drops the oldest instance, and nothing is allocated per move.
  */
 public class AudioManager {
+    private static final int MOVE_VOICES = 4;
+    private static final int EVENT_VOICES = 1;
+
     private static AudioManager instance = new AudioManager();
-    //keep a reference to the sound until it finishes playing, to prevent GC from prematurely recollecting it
-    private final Set<MediaPlayer> soundPool = Collections.newSetFromMap(new ConcurrentHashMap<MediaPlayer, Boolean>());
+    private final SoundEffect move = new SoundEffect("move", MOVE_VOICES);
+    private final SoundEffect win = new SoundEffect("win", EVENT_VOICES);
+    private final SoundEffect deadlock = new SoundEffect("deadlock", EVENT_VOICES);
     private boolean enabled = true;
 
     private AudioManager() {
@@ -37,42 +42,64 @@ public class AudioManager {
 
     /**
      * Plays the sound. If disabled, simply return.
-     * <p>
-     * Hint:
-     * {@link MediaPlayer#play()} and {@link MediaPlayer#dispose()} are used.
-     * When creating a new MediaPlayer object, add it into the soundpool before playing it.
-     * Also set a callback for when the sound has completed: remove it from the soundpool, and dispose of the
-     * sound in a newly created thread using the dispose method.
-     * <p>
-     * Make sure to set any threads you create as daemon threads so that the application will exit cleanly.
      *
-     * @param name the name of the sound file to be played, excluding .mp3
+     * @param effect The sound effect to play
      */
-    private void playFile(String name) {
-        //TODO
-
-        if (this.isEnabled()){
-            var media = new MediaPlayer(new Media(new File(System.getProperty("user.dir") + "/src/assets/audio/" + name + ".mp3").toURI().toString()));
-            soundPool.add(media);
-
-            media.play();
-
-            media.setOnEndOfMedia(() -> {
-                soundPool.remove(media);
-                media.dispose();
-            });
-        }
+    private void play(SoundEffect effect) {
+        if (this.isEnabled())
+            effect.play();
     }
 
     public void playMoveSound() {
-        playFile("move");
+        play(move);
     }
 
     public void playWinSound() {
-        playFile("win");
+        play(win);
     }
 
     public void playDeadlockSound() {
-        playFile("deadlock");
+        play(deadlock);
+    }
+
+    /**
+     * A sound decoded once and played by a ring of players
+     */
+    private static class SoundEffect {
+        private final MediaPlayer[] voices;
+        private int next;
+
+        /**
+         * @param name      the name of the sound file in assets/audio, excluding .mp3
+         * @param numVoices the most instances of the sound which can play at once
+         */
+        SoundEffect(String name, int numVoices) {
+            MediaPlayer[] players;
+            try {
+                Media media = new Media(AudioManager.class.getResource("/assets/audio/" + name + ".mp3")
+                        .toExternalForm());
+                players = new MediaPlayer[numVoices];
+                for (int i = 0; i < numVoices; i++) {
+                    players[i] = new MediaPlayer(media);
+                }
+            } catch (MediaException e) {
+                //e.g. no audio support on this machine, the game still works silently
+                e.printStackTrace();
+                players = new MediaPlayer[0];
+            }
+            voices = players;
+        }
+
+        /**
+         * Restarts the player which was started longest ago. Must be called on the FX application thread.
+         */
+        void play() {
+            if (voices.length == 0)
+                return;
+            MediaPlayer voice = voices[next];
+            next = (next + 1) % voices.length;
+            voice.seek(Duration.ZERO);
+            voice.play();
+        }
     }
 }
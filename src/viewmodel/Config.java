@@ -10,6 +10,11 @@ public class Config {
     public static final int LIST_CELL_HEIGHT = 30;
 
     public static final int LEVEL_EDITOR_TILE_SIZE = 32;
+    //where the replay of every cleared level is saved, relative to the working directory
+    public static final String REPLAY_DIRECTORY = "replays";
+    //where the difficulty metrics of every level played are kept between launches, relative to the working directory
+    public static final String METRICS_CACHE = "level-metrics.cache";
+
     public static final String CSS_STYLES = Config.class.getResource("/assets/css/styles.css").toString();
 
     public static String getAboutText() {
@@ -17,7 +22,11 @@ public class Config {
                 "w: up\n" +
                 "a: left\n" +
                 "s: down\n" +
-                "d: right\n\n" +
+                "d: right\n" +
+                "z: undo\n" +
+                "y: redo\n" +
+                "Click a square: walk there\n" +
+                "Click a crate, then a square: push the crate there\n\n" +
                 "Instructions:\n" +
                 "The objective of Sokoban is to push the all of the crates onto the destination tiles. This is done by moving the player next to a crate and pushing it.";
     }
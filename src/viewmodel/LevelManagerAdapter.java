@@ -0,0 +1,132 @@
+package viewmodel;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import model.GameLevel;
+import model.LevelManager;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Exposes the state of the JavaFX-free {@link LevelManager} and its {@link GameLevel} as JavaFX properties, so the
+ * panes can bind to them. The properties are only updated on the FX application thread.
+ * <p>
+ * The level duration is read from the {@link model.LevelTimer} by a single {@link AnimationTimer} on every pulse, so
+ * the display follows the timer without any thread or event per second.
+ * <p>
+ * Changes to the level names arrive from validation threads, so they are queued and applied in order, a batch per
+ * pulse, rather than posting one runnable per level.
+ */
+public class LevelManagerAdapter implements LevelManager.Listener, GameLevel.MoveListener {
+    private static final LevelManagerAdapter ourInstance = new LevelManagerAdapter();
+    private final ObservableList<String> levelNames = FXCollections.observableArrayList();
+    private final StringProperty curLevelNameProperty = new SimpleStringProperty();
+    private final IntegerProperty curGameLevelExistedDuration = new SimpleIntegerProperty();
+    private final IntegerProperty curGameLevelNumRestarts = new SimpleIntegerProperty();
+    private final IntegerProperty numPushes = new SimpleIntegerProperty();
+    private final ConcurrentLinkedQueue<Runnable> levelNameChanges = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean levelNameChangesScheduled = new AtomicBoolean();
+    private final AnimationTimer durationUpdater = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            int seconds = LevelManager.getInstance().getCurGameLevelExistedDuration();
+            if (seconds != curGameLevelExistedDuration.get())
+                curGameLevelExistedDuration.set(seconds);
+        }
+    };
+
+    private LevelManagerAdapter() {
+        LevelManager levelManager = LevelManager.getInstance();
+        levelManager.addListener(this);
+        levelManager.getGameLevel().addMoveListener(this);
+        List<String> names = levelManager.getLevelNames();
+        //queued after any changes which are already included in the names, and before any later ones
+        queueLevelNameChange(() -> levelNames.setAll(names));
+        curLevelNameProperty.set(levelManager.getCurrentLevelName());
+        curGameLevelExistedDuration.set(levelManager.getCurGameLevelExistedDuration());
+        curGameLevelNumRestarts.set(levelManager.getCurGameLevelNumRestarts());
+        numPushes.set(levelManager.getGameLevel().getNumPushes());
+        durationUpdater.start();
+    }
+
+    public static LevelManagerAdapter getInstance() {
+        return ourInstance;
+    }
+
+    /**
+     * @return The level names, kept in sync with {@link LevelManager#getLevelNames()}. Use
+     * {@link LevelManager#removeLevel(String)} rather than modifying this list.
+     */
+    public ObservableList<String> getLevelNames() {
+        return levelNames;
+    }
+
+    public StringProperty currentLevelNameProperty() {
+        return curLevelNameProperty;
+    }
+
+    public IntegerProperty curGameLevelExistedDurationProperty() {
+        return curGameLevelExistedDuration;
+    }
+
+    public IntegerProperty curGameLevelNumRestartsProperty() {
+        return curGameLevelNumRestarts;
+    }
+
+    public IntegerProperty numPushesProperty() {
+        return numPushes;
+    }
+
+    @Override
+    public void levelNamesChanged(List<String> names) {
+        queueLevelNameChange(() -> levelNames.setAll(names));
+    }
+
+    @Override
+    public void levelAdded(int index, String levelName) {
+        queueLevelNameChange(() -> levelNames.add(index, levelName));
+    }
+
+    private void queueLevelNameChange(Runnable change) {
+        levelNameChanges.add(change);
+        if (levelNameChangesScheduled.compareAndSet(false, true))
+            Platform.runLater(this::applyLevelNameChanges);
+    }
+
+    private void applyLevelNameChanges() {
+        levelNameChangesScheduled.set(false);
+        for (Runnable change = levelNameChanges.poll(); change != null; change = levelNameChanges.poll()) {
+            change.run();
+        }
+    }
+
+    @Override
+    public void currentLevelNameChanged(String levelName) {
+        onFxThread(() -> curLevelNameProperty.set(levelName));
+    }
+
+    @Override
+    public void numRestartsChanged(int numRestarts) {
+        onFxThread(() -> curGameLevelNumRestarts.set(numRestarts));
+    }
+
+    @Override
+    public void numPushesChanged(int numPushes) {
+        onFxThread(() -> this.numPushes.set(numPushes));
+    }
+
+    private static void onFxThread(Runnable update) {
+        if (Platform.isFxApplicationThread())
+            update.run();
+        else
+            Platform.runLater(update);
+    }
+}
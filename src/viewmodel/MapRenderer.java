@@ -2,16 +2,14 @@ package viewmodel;
 
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.image.Image;
 import model.Map.Cell;
-import model.Map.Occupant.Crate;
+import model.Map.Map;
 import model.Map.Occupant.Occupant;
 import model.Map.Occupant.Player;
 import model.Map.Occupiable.DestTile;
-import model.Map.Occupiable.Occupiable;
 import model.Map.Occupiable.Tile;
 
-import java.net.URISyntaxException;
+import java.util.Optional;
 
 import static viewmodel.Config.LEVEL_EDITOR_TILE_SIZE;
 
@@ -19,30 +17,6 @@ import static viewmodel.Config.LEVEL_EDITOR_TILE_SIZE;
  * Renders maps onto canvases
  */
 public class MapRenderer {
-    private static Image wall = null;
-    private static Image crateOnTile = null;
-    private static Image crateOnDest = null;
-
-    private static Image playerOnTile = null;
-    private static Image playerOnDest = null;
-
-    private static Image dest = null;
-    private static Image tile = null;
-
-    static {
-        try {
-            wall = new Image(MapRenderer.class.getResource("/assets/images/wall.png").toURI().toString());
-            crateOnTile = new Image(MapRenderer.class.getResource("/assets/images/crateOnTile.png").toURI().toString());
-            crateOnDest = new Image(MapRenderer.class.getResource("/assets/images/crateOnDest.png").toURI().toString());
-            playerOnTile = new Image(MapRenderer.class.getResource("/assets/images/playerOnTile.png").toURI().toString());
-            playerOnDest = new Image(MapRenderer.class.getResource("/assets/images/playerOnDest.png").toURI().toString());
-            dest = new Image(MapRenderer.class.getResource("/assets/images/dest.png").toURI().toString());
-            tile = new Image(MapRenderer.class.getResource("/assets/images/tile.png").toURI().toString());
-        } catch (URISyntaxException e) {
-            e.printStackTrace();
-        }
-    }
-
     /**
      * Render the map onto the canvas. This method can be used in Level Editor
      * <p>
@@ -60,47 +34,15 @@ public class MapRenderer {
         canvas.setHeight(row * LEVEL_EDITOR_TILE_SIZE);
         canvas.setWidth(col * LEVEL_EDITOR_TILE_SIZE);
 
+        GraphicsContext gc = canvas.getGraphicsContext2D();
         for (int i = 0; i < row; i++)
             for (int j = 0; j < col; j++)
-                //set switch case for changing the map
-                switch (map[i][j]) {
-
-                    case WALL:
-                        canvas.getGraphicsContext2D().drawImage(wall, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-                        break;
-
-                    case CRATE_ON_TILE:
-                        canvas.getGraphicsContext2D().drawImage(crateOnTile, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-                        break;
-
-                    case CRATE_ON_DEST:
-                        canvas.getGraphicsContext2D().drawImage(crateOnDest, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-                        break;
-
-                    case PLAYER_ON_TILE:
-                        canvas.getGraphicsContext2D().drawImage(playerOnTile, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-                        break;
-
-                    case PLAYER_ON_DEST:
-                        canvas.getGraphicsContext2D().drawImage(playerOnDest, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-                        break;
-
-                    case DEST:
-                        canvas.getGraphicsContext2D().drawImage(dest, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-                        break;
-
-                    case TILE:
-                        canvas.getGraphicsContext2D().drawImage(tile, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-                        break;
-
-                    default:
-                        break;
-                }
-
+                SpriteAtlas.draw(gc, SpriteAtlas.Sprite.valueOf(map[i][j].name()), j * LEVEL_EDITOR_TILE_SIZE,
+                        i * LEVEL_EDITOR_TILE_SIZE);
     }
 
     /**
-     * Render the map onto the canvas. This method can be used in GamePlayPane and LevelSelectPane
+     * Render the map onto the canvas. This method can be used in GamePlayPane
      * <p>
      * Hint: set the canvas height and width as a multiple of the rows and cols
      *
@@ -116,32 +58,72 @@ public class MapRenderer {
         canvas.setHeight(row * LEVEL_EDITOR_TILE_SIZE);
         canvas.setWidth(col * LEVEL_EDITOR_TILE_SIZE);
 
-        //use if statement to check tile/destTile/Wall, then check for player/crate
+        GraphicsContext gc = canvas.getGraphicsContext2D();
         for (int i = 0; i < row; i++)
-            for (int j = 0; j < col; j++) {
-                //set switch case for changing the map
-                if (map[i][j] instanceof DestTile) {
-                    if (((DestTile) map[i][j]).getOccupant().isPresent()) {
-                        if (((DestTile) map[i][j]).getOccupant().get() instanceof Player) {
-                            canvas.getGraphicsContext2D().drawImage(playerOnDest, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-                        } else if (((DestTile) map[i][j]).getOccupant().get() instanceof Crate) {
-                            canvas.getGraphicsContext2D().drawImage(crateOnDest, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-                        }
-                    }
-                    else canvas.getGraphicsContext2D().drawImage(dest, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-                }
-                else if (map[i][j] instanceof Tile) {
-                    if (((Tile) map[i][j]).getOccupant().isPresent()) {
-                        if (((Tile) map[i][j]).getOccupant().get() instanceof Player) {
-                            canvas.getGraphicsContext2D().drawImage(playerOnTile, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-                        } else if (((Tile) map[i][j]).getOccupant().get() instanceof Crate) {
-                            canvas.getGraphicsContext2D().drawImage(crateOnTile, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-                        }
-                    }
-                    else canvas.getGraphicsContext2D().drawImage(tile, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-                }
-                else canvas.getGraphicsContext2D().drawImage(wall, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
-
-            }
+            for (int j = 0; j < col; j++)
+                drawCell(gc, map[i][j], i, j);
+    }
+
+    /**
+     * Fully renders the map onto the canvas, and clears its changed cells since they are now up to date. Use this
+     * when a level is loaded or restarted.
+     *
+     * @param canvas The canvas to be rendered onto
+     * @param map    The map holding the current state of the game
+     */
+    public static void render(Canvas canvas, Map map) {
+        render(canvas, map.getCells());
+        map.clearChangedCells();
+    }
+
+    /**
+     * Redraws only the cells of the map which changed since it was last rendered, i.e. at most three cells per
+     * move, and then clears them. The canvas must already hold a full rendering of the same map.
+     *
+     * @param canvas The canvas to be rendered onto
+     * @param map    The map holding the current state of the game
+     */
+    public static void renderChanged(Canvas canvas, Map map) {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        Cell[][] cells = map.getCells();
+        for (int i = 0; i < map.getNumChangedCells(); i++) {
+            int r = map.getChangedRow(i);
+            int c = map.getChangedCol(i);
+            drawCell(gc, cells[r][c], r, c);
+        }
+        map.clearChangedCells();
+    }
+
+    /**
+     * Redraws a single cell of the map, e.g. to clear something drawn over it. The canvas must already hold a full
+     * rendering of the same map.
+     *
+     * @param canvas The canvas to be rendered onto
+     * @param map    The map holding the current state of the game
+     * @param r      The row of the cell
+     * @param c      The column of the cell
+     */
+    public static void renderCell(Canvas canvas, Map map, int r, int c) {
+        drawCell(canvas.getGraphicsContext2D(), map.getCells()[r][c], r, c);
+    }
+
+    /**
+     * Draws the sprite matching a single cell and its occupant.
+     */
+    private static void drawCell(GraphicsContext gc, Cell cell, int i, int j) {
+        //use if statement to check tile/destTile/Wall, then check for player/crate
+        SpriteAtlas.Sprite sprite;
+        if (cell instanceof Tile) {
+            Optional<Occupant> occupant = ((Tile) cell).getOccupant();
+            boolean isDest = cell instanceof DestTile;
+            if (!occupant.isPresent())
+                sprite = isDest ? SpriteAtlas.Sprite.DEST : SpriteAtlas.Sprite.TILE;
+            else if (occupant.get() instanceof Player)
+                sprite = isDest ? SpriteAtlas.Sprite.PLAYER_ON_DEST : SpriteAtlas.Sprite.PLAYER_ON_TILE;
+            else
+                sprite = isDest ? SpriteAtlas.Sprite.CRATE_ON_DEST : SpriteAtlas.Sprite.CRATE_ON_TILE;
+        } else sprite = SpriteAtlas.Sprite.WALL;
+
+        SpriteAtlas.draw(gc, sprite, j * LEVEL_EDITOR_TILE_SIZE, i * LEVEL_EDITOR_TILE_SIZE);
     }
 }
@@ -0,0 +1,67 @@
+package viewmodel;
+
+import javafx.animation.AnimationTimer;
+import model.GameLevel;
+import model.Replay.Replay;
+import model.Replay.ReplayEngine;
+
+/**
+ * Plays a {@link Replay} back on a {@link GameLevel} in real time. On every pulse the moves whose recorded time has
+ * passed are made, and the given callback redraws the map, so a replay takes as long as it did to play.
+ */
+public class ReplayPlayer {
+    private final ReplayEngine engine;
+    private final Runnable onMove;
+    private final Runnable onFinished;
+    private final AnimationTimer timer = new AnimationTimer() {
+        //the pulse times are based on System.nanoTime(), which may be negative
+        private boolean started;
+        private long startedAt;
+
+        @Override
+        public void handle(long now) {
+            if (!started) {
+                startedAt = now;
+                started = true;
+            }
+            if (engine.advanceTo((now - startedAt) / 1_000_000) > 0)
+                onMove.run();
+            if (engine.isFinished())
+                stop();
+        }
+
+        @Override
+        public void stop() {
+            super.stop();
+            if (engine.isFinished())
+                onFinished.run();
+        }
+    };
+
+    /**
+     * @param replay     The replay to play back
+     * @param gameLevel  The level in its starting position
+     * @param onMove     Called after moves have been made, to redraw the map
+     * @param onFinished Called once every move has been made
+     */
+    public ReplayPlayer(Replay replay, GameLevel gameLevel, Runnable onMove, Runnable onFinished) {
+        this.engine = new ReplayEngine(replay, gameLevel);
+        this.onMove = onMove;
+        this.onFinished = onFinished;
+    }
+
+    public void start() {
+        timer.start();
+    }
+
+    /**
+     * Stops the playback where it is, without calling the finished callback
+     */
+    public void stop() {
+        timer.stop();
+    }
+
+    public boolean isFinished() {
+        return engine.isFinished();
+    }
+}
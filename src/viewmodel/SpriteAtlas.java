@@ -0,0 +1,150 @@
+package viewmodel;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+import model.Map.Board;
+
+import java.net.URISyntaxException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static viewmodel.Config.LEVEL_EDITOR_TILE_SIZE;
+
+/**
+ * Holds every map sprite in a single image, laid out side by side in {@link Sprite} order. Canvases draw regions
+ * of the atlas, and thumbnails copy its pixels directly, scaled down to the requested tile size.
+ */
+public class SpriteAtlas {
+    private static final WritableImage atlas;
+    //sprite pixels scaled to a tile size, indexed by sprite ordinal, keyed by tile size
+    private static final ConcurrentHashMap<Integer, int[][]> scaledPixels = new ConcurrentHashMap<>();
+
+    static {
+        Sprite[] sprites = Sprite.values();
+        atlas = new WritableImage(sprites.length * LEVEL_EDITOR_TILE_SIZE, LEVEL_EDITOR_TILE_SIZE);
+        for (Sprite sprite : sprites) {
+            try {
+                Image image = new Image(SpriteAtlas.class.getResource(sprite.path).toURI().toString(),
+                        LEVEL_EDITOR_TILE_SIZE, LEVEL_EDITOR_TILE_SIZE, false, true);
+                atlas.getPixelWriter().setPixels(sprite.ordinal() * LEVEL_EDITOR_TILE_SIZE, 0, LEVEL_EDITOR_TILE_SIZE,
+                        LEVEL_EDITOR_TILE_SIZE, image.getPixelReader(), 0, 0);
+            } catch (URISyntaxException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private SpriteAtlas() {
+    }
+
+    /**
+     * Draws a sprite at its full size onto the canvas.
+     *
+     * @param gc     The graphics context of the canvas
+     * @param sprite The sprite to draw
+     * @param x      The x coordinate of the top left corner
+     * @param y      The y coordinate of the top left corner
+     */
+    public static void draw(GraphicsContext gc, Sprite sprite, double x, double y) {
+        gc.drawImage(atlas, sprite.ordinal() * LEVEL_EDITOR_TILE_SIZE, 0, LEVEL_EDITOR_TILE_SIZE,
+                LEVEL_EDITOR_TILE_SIZE, x, y, LEVEL_EDITOR_TILE_SIZE, LEVEL_EDITOR_TILE_SIZE);
+    }
+
+    /**
+     * Renders a board into a new image without a canvas, so it can be done on any thread.
+     *
+     * @param board    The board to render
+     * @param tileSize The size of each cell in pixels, at most {@link Config#LEVEL_EDITOR_TILE_SIZE}
+     * @return The rendered image
+     */
+    public static WritableImage render(Board board, int tileSize) {
+        int[][] sprites = pixels(tileSize);
+        int width = board.getCols() * tileSize;
+        int height = board.getRows() * tileSize;
+        int[] argb = new int[width * height];
+
+        for (int r = 0; r < board.getRows(); r++) {
+            for (int c = 0; c < board.getCols(); c++) {
+                int[] sprite = sprites[Sprite.of(board, board.toIndex(r, c)).ordinal()];
+                int offset = r * tileSize * width + c * tileSize;
+                for (int y = 0; y < tileSize; y++) {
+                    System.arraycopy(sprite, y * tileSize, argb, offset + y * width, tileSize);
+                }
+            }
+        }
+
+        WritableImage image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), argb, 0, width);
+        return image;
+    }
+
+    /**
+     * Samples every sprite down to the tile size once, averaging the pixels each thumbnail pixel covers.
+     */
+    private static int[][] pixels(int tileSize) {
+        return scaledPixels.computeIfAbsent(tileSize, size -> {
+            PixelReader reader = atlas.getPixelReader();
+            Sprite[] values = Sprite.values();
+            int[][] result = new int[values.length][size * size];
+            int step = LEVEL_EDITOR_TILE_SIZE / size;
+            for (Sprite sprite : values) {
+                int left = sprite.ordinal() * LEVEL_EDITOR_TILE_SIZE;
+                for (int y = 0; y < size; y++) {
+                    for (int x = 0; x < size; x++) {
+                        long a = 0, r = 0, g = 0, b = 0;
+                        for (int dy = 0; dy < step; dy++) {
+                            for (int dx = 0; dx < step; dx++) {
+                                int p = reader.getArgb(left + x * step + dx, y * step + dy);
+                                a += p >>> 24;
+                                r += (p >> 16) & 0xFF;
+                                g += (p >> 8) & 0xFF;
+                                b += p & 0xFF;
+                            }
+                        }
+                        int n = step * step;
+                        result[sprite.ordinal()][y * size + x] =
+                                (int) (a / n) << 24 | (int) (r / n) << 16 | (int) (g / n) << 8 | (int) (b / n);
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * The sprites in the atlas
+     */
+    public enum Sprite {
+        WALL("wall"),
+        TILE("tile"),
+        DEST("dest"),
+        CRATE_ON_TILE("crateOnTile"),
+        CRATE_ON_DEST("crateOnDest"),
+        PLAYER_ON_TILE("playerOnTile"),
+        PLAYER_ON_DEST("playerOnDest");
+
+        private final String path;
+
+        Sprite(String name) {
+            this.path = "/assets/images/" + name + ".png";
+        }
+
+        /**
+         * @param board The board
+         * @param index A square of the board
+         * @return The sprite showing the square
+         */
+        public static Sprite of(Board board, int index) {
+            if (board.isWall(index))
+                return WALL;
+            boolean isDest = board.isDest(index);
+            if (board.hasCrate(index))
+                return isDest ? CRATE_ON_DEST : CRATE_ON_TILE;
+            if (board.getPlayer() == index)
+                return isDest ? PLAYER_ON_DEST : PLAYER_ON_TILE;
+            return isDest ? DEST : TILE;
+        }
+    }
+}
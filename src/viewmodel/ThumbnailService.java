@@ -0,0 +1,143 @@
+package viewmodel;
+
+import javafx.scene.image.Image;
+import model.LevelManager;
+import model.Map.Board;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static viewmodel.Config.LEVEL_EDITOR_TILE_SIZE;
+
+/**
+ * Renders images of levels in the background and caches them, so browsing levels never loads them into the current
+ * {@link model.GameLevel} or draws them on the FX thread.
+ * <p>
+ * Each level is read with {@link LevelManager#readLevel(String)} and drawn with {@link SpriteAtlas#render(Board, int)}
+ * on a pool of daemon threads. Requests are served newest first, so when a long list is scrolled the rows currently
+ * on screen are drawn before the ones that were scrolled past. Requests can be cancelled through the returned
+ * futures before they start.
+ * <p>
+ * Images are cached by level until {@link #clear()} is called, the least recently used ones being dropped once a
+ * cache is full.
+ */
+public class ThumbnailService {
+    private static final ThumbnailService ourInstance = new ThumbnailService();
+    private static final int THUMBNAIL_HEIGHT = Config.LIST_CELL_HEIGHT - 6;
+    private static final int MAX_THUMBNAIL_TILE_SIZE = 8;
+    private static final int MAX_THUMBNAILS = 8192;
+    private static final int MAX_PREVIEWS = 16;
+
+    private final ImageCache thumbnails = new ImageCache(MAX_THUMBNAILS);
+    private final ImageCache previews = new ImageCache(MAX_PREVIEWS);
+    private final ExecutorService executor;
+
+    private ThumbnailService() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingDeque<Runnable>() {
+                    @Override
+                    public boolean offer(Runnable task) {
+                        return offerFirst(task);
+                    }
+                },
+                task -> {
+                    Thread thread = new Thread(task, "thumbnail-renderer");
+                    thread.setDaemon(true); //so application exits when Platform.exit is called
+                    return thread;
+                });
+    }
+
+    public static ThumbnailService getInstance() {
+        return ourInstance;
+    }
+
+    /**
+     * @param levelName The level name in the current map directory or level pack
+     * @return A small image of the level, fitting in a list cell. Completes exceptionally if the level is invalid.
+     */
+    public CompletableFuture<Image> getThumbnail(String levelName) {
+        return thumbnails.get(levelName, board -> {
+            int tileSize = MAX_THUMBNAIL_TILE_SIZE;
+            while (tileSize > 1 && tileSize * board.getRows() > THUMBNAIL_HEIGHT)
+                tileSize /= 2;
+            return tileSize;
+        });
+    }
+
+    /**
+     * @param levelName The level name in the current map directory or level pack
+     * @return A full size image of the level. Completes exceptionally if the level is invalid.
+     */
+    public CompletableFuture<Image> getPreview(String levelName) {
+        return previews.get(levelName, board -> LEVEL_EDITOR_TILE_SIZE);
+    }
+
+    /**
+     * Drops every cached image, e.g. when the map directory changes. Requests which are still running are not
+     * cancelled.
+     */
+    public void clear() {
+        thumbnails.clear();
+        previews.clear();
+    }
+
+    /**
+     * Chooses the tile size to draw a board with
+     */
+    private interface TileSize {
+        int of(Board board);
+    }
+
+    private class ImageCache {
+        private final LinkedHashMap<String, CompletableFuture<Image>> images;
+
+        ImageCache(int maxEntries) {
+            images = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Image>> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized CompletableFuture<Image> get(String levelName, TileSize tileSize) {
+            String key = LevelManager.getInstance().getMapDirectory() + "/" + levelName;
+            CompletableFuture<Image> image = images.get(key);
+            if (image != null)
+                return image;
+
+            CompletableFuture<Image> result = new CompletableFuture<>();
+            images.put(key, result);
+            //failed and cancelled requests are not cached, so they can be retried
+            result.whenComplete((i, e) -> {
+                if (e != null)
+                    remove(key, result);
+            });
+            executor.execute(() -> {
+                if (result.isDone())
+                    return;
+                try {
+                    Board board = LevelManager.getInstance().readLevel(levelName).getBoard();
+                    result.complete(SpriteAtlas.render(board, tileSize.of(board)));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            return result;
+        }
+
+        synchronized void remove(String key, CompletableFuture<Image> image) {
+            images.remove(key, image);
+        }
+
+        synchronized void clear() {
+            images.clear();
+        }
+    }
+}
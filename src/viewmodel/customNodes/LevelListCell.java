@@ -0,0 +1,68 @@
+package viewmodel.customNodes;
+
+import javafx.application.Platform;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.Tooltip;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import model.LevelInfo;
+import model.LevelManager;
+import model.Metrics.LevelMetrics;
+import viewmodel.Config;
+import viewmodel.ThumbnailService;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shows a level name together with a thumbnail of the level, and its size and number of crates as a tooltip.
+ * Thumbnails come from {@link ThumbnailService}; when a cell is reused for another level before its thumbnail is
+ * ready, the pending request is cancelled.
+ */
+public class LevelListCell extends ListCell<String> {
+    private final ImageView thumbnail = new ImageView();
+    private CompletableFuture<Image> pending;
+    private String pendingItem;
+
+    public LevelListCell() {
+        thumbnail.setFitHeight(Config.LIST_CELL_HEIGHT - 6);
+        thumbnail.setPreserveRatio(true);
+    }
+
+    @Override
+    protected void updateItem(String item, boolean empty) {
+        super.updateItem(item, empty);
+        //cells are updated again with the same item, e.g. on layout, which must not restart the request
+        if (!empty && item != null && item.equals(pendingItem))
+            return;
+        if (pending != null && !pending.isDone())
+            pending.cancel(false);
+        pending = null;
+        pendingItem = null;
+        thumbnail.setImage(null);
+
+        if (empty || item == null) {
+            setText(null);
+            setGraphic(null);
+            setTooltip(null);
+            return;
+        }
+        setText(item);
+        setGraphic(thumbnail);
+        LevelInfo info = LevelManager.getInstance().getLevelInfo(item);
+        LevelMetrics metrics = LevelManager.getInstance().getLevelMetrics(item);
+        setTooltip(info == null ? null : new Tooltip(metrics == null ? info.toString() : info + "\n" + metrics));
+
+        CompletableFuture<Image> image = ThumbnailService.getInstance().getThumbnail(item);
+        if (image.isDone() && !image.isCompletedExceptionally()) {
+            thumbnail.setImage(image.join());
+            return;
+        }
+        pending = image;
+        pendingItem = item;
+        image.thenAcceptAsync(i -> {
+            //the cell may have been reused for another level in the meantime
+            if (pending == image)
+                thumbnail.setImage(i);
+        }, Platform::runLater);
+    }
+}
@@ -1,9 +1,11 @@
 package viewmodel.panes;
 
+import javafx.application.Platform;
 import javafx.application.Preloader;
 import javafx.event.EventHandler;
 import javafx.geometry.Pos;
 import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
@@ -12,20 +14,33 @@ import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
 import model.Exceptions.InvalidMapException;
 import model.GameLevel;
 import model.LevelManager;
+import model.Map.Board;
+import model.Map.Map;
+import model.MovePlanner;
+import model.Replay.Replay;
 import viewmodel.AudioManager;
+import viewmodel.Config;
 import viewmodel.LevelEditorCanvas;
+import viewmodel.LevelManagerAdapter;
 import viewmodel.MapRenderer;
+import viewmodel.ReplayPlayer;
 import viewmodel.SceneManager;
 import viewmodel.customNodes.GameplayInfoPane;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.nio.BufferUnderflowException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
+import static viewmodel.Config.LEVEL_EDITOR_TILE_SIZE;
+
 /**
  * Represents the gameplay pane in the game
  */
@@ -37,6 +52,11 @@ public class GameplayPane extends BorderPane {
     private HBox buttonBar;
     private Button restartButton;
     private Button quitToMenuButton;
+    //the replay of the last cleared level, and its playback while it is being watched
+    private Replay lastReplay;
+    private ReplayPlayer replayPlayer;
+    //the board index of the crate clicked to be pushed, or -1
+    private int selectedCrate = -1;
 
     /**
      * Instantiate the member components and connect and style them. Also set the callbacks.
@@ -46,10 +66,10 @@ public class GameplayPane extends BorderPane {
         //TODO
 
         info = new GameplayInfoPane(
-                LevelManager.getInstance().currentLevelNameProperty(),
-                LevelManager.getInstance().curGameLevelExistedDurationProperty(),
-                LevelManager.getInstance().getGameLevel().numPushesProperty(),
-                LevelManager.getInstance().curGameLevelNumRestartsProperty()
+                LevelManagerAdapter.getInstance().currentLevelNameProperty(),
+                LevelManagerAdapter.getInstance().curGameLevelExistedDurationProperty(),
+                LevelManagerAdapter.getInstance().numPushesProperty(),
+                LevelManagerAdapter.getInstance().curGameLevelNumRestartsProperty()
         );
         canvasContainer = new VBox();
         gamePlayCanvas = new Canvas();
@@ -68,7 +88,7 @@ public class GameplayPane extends BorderPane {
     private void connectComponents() {
         //TODO
 
-        MapRenderer.render(gamePlayCanvas, LevelManager.getInstance().getGameLevel().getMap().getCells());
+        MapRenderer.render(gamePlayCanvas, LevelManager.getInstance().getGameLevel().getMap());
 
         canvasContainer.getChildren().add(gamePlayCanvas);
         buttonBar.getChildren().addAll(info, restartButton, quitToMenuButton);
@@ -92,7 +112,8 @@ public class GameplayPane extends BorderPane {
     /**
      * Set the event handlers for the 2 buttons.
      * <p>
-     * Also listens for key presses (w, a, s, d), which move the character.
+     * Also listens for key presses (w, a, s, d), which move the character, and z/y, which undo and redo moves,
+     * and for clicks on the map, see {@link #doClickAction(double, double)}.
      * <p>
      * Hint: {@link GameplayPane#setOnKeyPressed(EventHandler)}  is needed.
      * You will need to make the move, rerender the canvas, play the sound (if the move was made), and detect
@@ -106,19 +127,104 @@ public class GameplayPane extends BorderPane {
         quitToMenuButton.setOnAction(event -> this.doQuitToMenuAction());
         restartButton.setOnAction(event -> this.doRestartAction());
         this.setOnKeyTyped(event -> {
+            if (isReplaying())
+                return;
             if (event.getCharacter().length() == 1)
-                if (LevelManager.getInstance().getGameLevel().makeMove(event.getCharacter().charAt(0))) {
-                    AudioManager.getInstance().playMoveSound();
-                    this.renderCanvas();
-                    if (LevelManager.getInstance().getGameLevel().isWin())
-                        this.createLevelClearPopup();
-                    else if (LevelManager.getInstance().getGameLevel().isDeadlocked())
-                        this.createDeadlockedPopup();
-                }
+                if (doMoveAction(event.getCharacter().charAt(0)))
+                    this.afterMoves();
         });
+        gamePlayCanvas.setOnMouseClicked(event -> this.doClickAction(event.getX(), event.getY()));
 
     }
 
+    /**
+     * Renders the moves just made and checks for a win or deadlock. Called once per key press or click, however
+     * many moves it made.
+     */
+    private void afterMoves() {
+        if (selectedCrate >= 0)
+            setSelectedCrate(-1);
+        AudioManager.getInstance().playMoveSound();
+        this.renderChangedCells();
+        if (LevelManager.getInstance().getGameLevel().isWin())
+            this.createLevelClearPopup();
+        else if (LevelManager.getInstance().getGameLevel().isDeadlocked())
+            this.createDeadlockedPopup();
+    }
+
+    /**
+     * Handles a click on the map. Clicking a square the player can reach walks there along a shortest path.
+     * Clicking a crate selects it, and clicking a square after that pushes the crate there with the fewest pushes,
+     * see {@link MovePlanner}. Clicking the selected crate again deselects it.
+     *
+     * @param x The x coordinate of the click on the canvas
+     * @param y The y coordinate of the click on the canvas
+     */
+    private void doClickAction(double x, double y) {
+        if (isReplaying())
+            return;
+        GameLevel gameLevel = LevelManager.getInstance().getGameLevel();
+        Board board = gameLevel.getMap().getBoard();
+        int r = (int) (y / LEVEL_EDITOR_TILE_SIZE);
+        int c = (int) (x / LEVEL_EDITOR_TILE_SIZE);
+        if (r < 0 || r >= board.getRows() || c < 0 || c >= board.getCols())
+            return;
+        int index = board.toIndex(r, c);
+
+        List<Map.Direction> plan;
+        if (board.hasCrate(index)) {
+            setSelectedCrate(index == selectedCrate ? -1 : index);
+            return;
+        } else if (selectedCrate >= 0) {
+            plan = MovePlanner.planPush(board, selectedCrate, index);
+        } else {
+            plan = MovePlanner.planWalk(board, index);
+        }
+        if (plan != null && gameLevel.makeMoves(plan) > 0)
+            this.afterMoves();
+    }
+
+    /**
+     * Selects a crate for pushing by outlining it, or clears the selection
+     *
+     * @param crate The board index of the crate, or -1
+     */
+    private void setSelectedCrate(int crate) {
+        Map map = LevelManager.getInstance().getGameLevel().getMap();
+        Board board = map.getBoard();
+        //redraw the cell of the previously selected crate without the outline
+        if (selectedCrate >= 0)
+            MapRenderer.renderCell(gamePlayCanvas, map, board.rowOf(selectedCrate), board.colOf(selectedCrate));
+        selectedCrate = crate;
+        if (crate < 0)
+            return;
+        GraphicsContext gc = gamePlayCanvas.getGraphicsContext2D();
+        gc.setStroke(Color.GOLD);
+        gc.setLineWidth(3);
+        gc.strokeRect(board.colOf(crate) * LEVEL_EDITOR_TILE_SIZE + 1.5,
+                board.rowOf(crate) * LEVEL_EDITOR_TILE_SIZE + 1.5, LEVEL_EDITOR_TILE_SIZE - 3,
+                LEVEL_EDITOR_TILE_SIZE - 3);
+    }
+
+    /**
+     * Applies a key typed by the user: z undoes the last move, y redoes it, anything else is passed on to
+     * {@link GameLevel#makeMove(char)}.
+     *
+     * @param c The char typed by the user
+     * @return Whether the map changed
+     */
+    private boolean doMoveAction(char c) {
+        GameLevel gameLevel = LevelManager.getInstance().getGameLevel();
+        switch (c) {
+            case 'z':
+                return gameLevel.undo();
+            case 'y':
+                return gameLevel.redo();
+            default:
+                return gameLevel.makeMove(c);
+        }
+    }
+
     /**
      * Called when the tries to quit to menu. Show a popup (see the documentation). If confirmed,
      * do the appropriate action regarding the level timer, level number of restarts, and go to the
@@ -131,13 +237,17 @@ public class GameplayPane extends BorderPane {
         alert.setTitle("Confirm");
         alert.setHeaderText("Return to menu?");
         alert.setContentText("Game progress will be lost.");
+        LevelManager.getInstance().pauseLevelTimer();
         Optional<ButtonType> result = alert.showAndWait();
 
-        if (result.isPresent())
-            if (result.get() == ButtonType.OK) {
-                LevelManager.getInstance().resetNumRestarts();
-                SceneManager.getInstance().showMainMenuScene();
-            }
+        if (result.isPresent() && result.get() == ButtonType.OK) {
+            stopReplay();
+            LevelManager.getInstance().resetLevelTimer();
+            LevelManager.getInstance().resetNumRestarts();
+            SceneManager.getInstance().showMainMenuScene();
+        } else {
+            LevelManager.getInstance().resumeLevelTimer();
+        }
     }
 
     /**
@@ -151,10 +261,12 @@ public class GameplayPane extends BorderPane {
 
         if (LevelManager.getInstance().getGameLevel().isDeadlocked()) {
 
+            LevelManager.getInstance().pauseLevelTimer();
             AudioManager.getInstance().playDeadlockSound();
             Alert popup = new Alert(Alert.AlertType.CONFIRMATION);
             popup.setTitle("Confirm");
             popup.setHeaderText("Level deadlocked!");
+            popup.setContentText("Detected by: " + LevelManager.getInstance().getGameLevel().getDeadlockReason());
             ButtonType restart = new ButtonType("Restart");
             ButtonType re_turn = new ButtonType("Return");
             popup.getButtonTypes().setAll(restart, re_turn);
@@ -187,18 +299,25 @@ public class GameplayPane extends BorderPane {
 
         if (LevelManager.getInstance().getGameLevel().isWin()) {
 
+            LevelManager.getInstance().pauseLevelTimer();
             AudioManager.getInstance().playWinSound();
+            if (replayPlayer == null)
+                saveReplay();
+            replayPlayer = null;
             Alert popup = new Alert(Alert.AlertType.CONFIRMATION);
             popup.setTitle("Confirm");
             popup.setHeaderText("Level cleared!");
             ButtonType next = new ButtonType("Next level");
+            ButtonType watch = new ButtonType("Watch replay");
             ButtonType re_turn = new ButtonType("Return");
             if (LevelManager.getInstance().getNextLevelName() != null)
-                popup.getButtonTypes().setAll(next, re_turn);
-            else popup.getButtonTypes().setAll(re_turn);
+                popup.getButtonTypes().setAll(next, watch, re_turn);
+            else popup.getButtonTypes().setAll(watch, re_turn);
             Optional<ButtonType> result = popup.showAndWait();
 
             if (result.isPresent()) {
+                if (result.get() == watch)
+                    this.doWatchReplayAction();
                 if (result.get() == next) {
                     try {
                         LevelManager.getInstance().setLevel(LevelManager.getInstance().getNextLevelName());
@@ -210,7 +329,7 @@ public class GameplayPane extends BorderPane {
                         pop.getButtonTypes().add(ButtonType.CANCEL);
                         Optional<ButtonType> popresult = pop.showAndWait();
 
-                        String target = LevelManager.getInstance().currentLevelNameProperty().getValue();
+                        String target = LevelManager.getInstance().getCurrentLevelName();
 
                         if (popresult.isPresent()) {
                             if (popresult.get() == ButtonType.OK) {
@@ -236,11 +355,11 @@ public class GameplayPane extends BorderPane {
                     } catch (FileNotFoundException e) {
                         Alert noMap = new Alert(Alert.AlertType.WARNING);
                         noMap.setTitle("Error");
-                        noMap.setHeaderText(LevelManager.getInstance().currentLevelNameProperty().getValue() + " is missing");
+                        noMap.setHeaderText(LevelManager.getInstance().getCurrentLevelName() + " is missing");
                         noMap.setContentText("Redirecting to the next exist map");
                         noMap.show();
 
-                        String target = LevelManager.getInstance().currentLevelNameProperty().getValue();
+                        String target = LevelManager.getInstance().getCurrentLevelName();
 
                         try {
                             LevelManager.getInstance().setLevel(LevelManager.getInstance().getNextLevelName());
@@ -265,6 +384,47 @@ public class GameplayPane extends BorderPane {
         }
     }
 
+    /**
+     * Writes the replay of the level which was just cleared to {@link Config#REPLAY_DIRECTORY}, and keeps it so it
+     * can be watched from the level clear popup
+     */
+    private void saveReplay() {
+        lastReplay = LevelManager.getInstance().getGameLevel().getReplay();
+        try {
+            LevelManager.getInstance().saveReplay(Paths.get(Config.REPLAY_DIRECTORY));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reloads the current level and plays the replay of the last clear on it in real time, ignoring key presses
+     * until it is finished, after which the level clear popup is shown again
+     */
+    private void doWatchReplayAction() {
+        try {
+            LevelManager.getInstance().setLevel(LevelManager.getInstance().getCurrentLevelName());
+        } catch (InvalidMapException | FileNotFoundException e) {
+            return;
+        }
+        renderCanvas();
+        replayPlayer = new ReplayPlayer(lastReplay, LevelManager.getInstance().getGameLevel(),
+                this::renderChangedCells,
+                //dialogs cannot be shown while an animation pulse is being processed
+                () -> Platform.runLater(this::createLevelClearPopup));
+        replayPlayer.start();
+    }
+
+    private boolean isReplaying() {
+        return replayPlayer != null && !replayPlayer.isFinished();
+    }
+
+    private void stopReplay() {
+        if (replayPlayer != null)
+            replayPlayer.stop();
+        replayPlayer = null;
+    }
+
     /**
      * Set the current level to the current level name, rerender the canvas, reset and start the timer, and
      * increment the number of restarts
@@ -272,9 +432,10 @@ public class GameplayPane extends BorderPane {
     private void doRestartAction() {
         //TODO
 
+        stopReplay();
         //LevelManager.getInstance().currentLevelNameProperty().setValue(LevelManager.getInstance().currentLevelNameProperty().getValue());
         try {
-            LevelManager.getInstance().setLevel(LevelManager.getInstance().currentLevelNameProperty().getValue());
+            LevelManager.getInstance().setLevel(LevelManager.getInstance().getCurrentLevelName());
         } catch (InvalidMapException e) {
             return;
         } catch (FileNotFoundException e) {
@@ -294,7 +455,17 @@ public class GameplayPane extends BorderPane {
     private void renderCanvas() {
         //TODO
 
-        MapRenderer.render(gamePlayCanvas, LevelManager.getInstance().getGameLevel().getMap().getCells());
+        //the outline of a selected crate is drawn over
+        selectedCrate = -1;
+        MapRenderer.render(gamePlayCanvas, LevelManager.getInstance().getGameLevel().getMap());
+
+    }
 
+    /**
+     * Redraw only the cells changed by the last move. The canvas must have been fully rendered with
+     * {@link #renderCanvas()} since the level was loaded.
+     */
+    private void renderChangedCells() {
+        MapRenderer.renderChanged(gamePlayCanvas, LevelManager.getInstance().getGameLevel().getMap());
     }
 }
@@ -1,28 +1,28 @@
 package viewmodel.panes;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
-import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ListView;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import model.Exceptions.InvalidMapException;
-import model.GameLevel;
 import model.LevelManager;
-import model.Map.Cell;
-import model.Map.Map;
 import viewmodel.Config;
-import viewmodel.MapRenderer;
+import viewmodel.LevelManagerAdapter;
 import viewmodel.SceneManager;
+import viewmodel.ThumbnailService;
+import viewmodel.customNodes.LevelListCell;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.concurrent.CompletionException;
 
 /**
  * Represents the main menu in the game
@@ -32,9 +32,10 @@ public class LevelSelectPane extends BorderPane {
     private Button returnButton;
     private Button playButton;
     private Button chooseMapDirButton;
+    private Button chooseLevelPackButton;
     private ListView<String> levelsListView;
     private VBox centerContainer;
-    private Canvas levelPreview;
+    private ImageView levelPreview;
     /**
      * Instantiate the member components and connect and style them. Also set the callbacks.
      * Use 20 for VBox spacing
@@ -45,9 +46,10 @@ public class LevelSelectPane extends BorderPane {
         returnButton = new Button("Return");
         playButton = new Button("Play");
         chooseMapDirButton = new Button("Choose map directory");
+        chooseLevelPackButton = new Button("Open level pack");
         levelsListView = new ListView<>();
         centerContainer = new VBox();
-        levelPreview = new Canvas();
+        levelPreview = new ImageView();
 
         connectComponents();
         styleComponents();
@@ -62,7 +64,8 @@ public class LevelSelectPane extends BorderPane {
     private void connectComponents() {
         //TODO
 
-        leftContainer.getChildren().addAll(returnButton, chooseMapDirButton, levelsListView, playButton);
+        leftContainer.getChildren().addAll(returnButton, chooseMapDirButton, chooseLevelPackButton, levelsListView,
+                playButton);
         centerContainer.getChildren().addAll(levelPreview);
 
         this.setLeft(leftContainer);
@@ -81,21 +84,26 @@ public class LevelSelectPane extends BorderPane {
         playButton.getStyleClass().add("big-button");
         playButton.setDisable(true);
         chooseMapDirButton.getStyleClass().add("big-button");
+        chooseLevelPackButton.getStyleClass().add("big-button");
         //levelsListView.getStyleClass().add("list-cell");
         levelsListView.setPrefHeight(Config.LIST_CELL_HEIGHT * 11);
+        levelsListView.setFixedCellSize(Config.LIST_CELL_HEIGHT);
+        levelsListView.setCellFactory(listView -> new LevelListCell());
         centerContainer.getStyleClass().add("big-vbox");
     }
 
     /**
-     * Set the event handlers for the 3 buttons and listview.
+     * Set the event handlers for the 4 buttons and listview.
      * <p>
      * Hints:
      * The return button should show the main menu scene
      * The chooseMapDir button should prompt the user to choose the map directory, and load the levels
+     * The chooseLevelPack button should prompt the user to choose a level pack file, and load the levels
      * The play button should set the current level based on the current level name (see LevelManager), show
      * the gameplay scene, and start the level timer.
-     * The listview, based on which item was clicked, should set the current level (see LevelManager), render the
-     * preview (see {@link MapRenderer#render(Canvas, Cell[][])}}, and set the play button to enabled.
+     * The listview, based on which item was clicked, should show the preview (see
+     * {@link ThumbnailService#getPreview(String)}), and set the play button to enabled. The level only becomes the
+     * current level when it is played.
      */
     private void setCallbacks() {
         //TODO
@@ -103,6 +111,7 @@ public class LevelSelectPane extends BorderPane {
         setOnMouseMoved(event -> refreshLevelListView());
         returnButton.setOnAction(event -> SceneManager.getInstance().showMainMenuScene());
         chooseMapDirButton.setOnAction(event -> this.promptUserForMapDirectory());
+        chooseLevelPackButton.setOnAction(event -> this.promptUserForLevelPack());
         playButton.setOnAction(
                 event -> {
                     try {
@@ -118,36 +127,44 @@ public class LevelSelectPane extends BorderPane {
                 }
         );
         levelsListView.getSelectionModel().selectedItemProperty().addListener(
-                event -> {
-                    try {
-                        LevelManager.getInstance().setLevel(levelsListView.getSelectionModel().getSelectedItem());
-                    } catch (InvalidMapException e) {
-                        Alert popup = new Alert(Alert.AlertType.WARNING);
-                        popup.setTitle("Invalid map");
-                        popup.setHeaderText("The chosen map is invalid");
-                        popup.show();
-
-                        levelsListView.getItems().remove(levelsListView.getSelectionModel().getSelectedItem());
-                        levelsListView.refresh();
-                        return;
-                    } catch (FileNotFoundException e) {
-                        return;
-                    }
-                }
-        );
-        levelsListView.getSelectionModel().selectedItemProperty().addListener(
-                event -> {
-                    try {
-                        MapRenderer.render(levelPreview, LevelManager.getInstance().getGameLevel().getMap().getCells());
-                    } catch (NullPointerException e) {
-                        return;
-                    }
-                }
+                (observable, oldValue, newValue) -> showPreview(newValue)
         );
         levelsListView.getSelectionModel().selectedItemProperty().addListener(event -> playButton.setDisable(false));
 
     }
 
+    /**
+     * Shows the preview of a level once it is rendered, unless another level has been selected by then. If the level
+     * turns out to be invalid, warns the user and removes it from the list.
+     *
+     * @param levelName The selected level
+     */
+    private void showPreview(String levelName) {
+        levelPreview.setImage(null);
+        if (levelName == null)
+            return;
+
+        ThumbnailService.getInstance().getPreview(levelName).whenCompleteAsync((image, e) -> {
+            if (!levelName.equals(levelsListView.getSelectionModel().getSelectedItem()))
+                return;
+            if (e == null) {
+                levelPreview.setImage(image);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (!(cause instanceof InvalidMapException))
+                return;
+
+            Alert popup = new Alert(Alert.AlertType.WARNING);
+            popup.setTitle("Invalid map");
+            popup.setHeaderText("The chosen map is invalid");
+            popup.show();
+
+            LevelManager.getInstance().removeLevel(levelName);
+            levelsListView.refresh();
+        }, Platform::runLater);
+    }
+
     /**
      * Popup a DirectoryChooser window to ask the user where the map folder is stored.
      * Update the LevelManager's map directory afterwards, and potentially
@@ -164,20 +181,36 @@ public class LevelSelectPane extends BorderPane {
         if (destFolder == null)
             return;
 
-        ObservableList<String> fileList = FXCollections.observableArrayList();
-        int numOfMap = destFolder.listFiles().length;
+        LevelManager.getInstance().setMapDirectory(destFolder.getPath());
+        LevelManager.getInstance().loadLevelNamesFromDisk();
+        ThumbnailService.getInstance().clear();
+        levelsListView.setItems(LevelManagerAdapter.getInstance().getLevelNames());
+    }
 
-        for (int i = 0; i < numOfMap; i++)
-            fileList.add(destFolder.listFiles()[i].getName());
+    /**
+     * Popup a FileChooser window to ask the user for a level pack file holding many levels, and load the levels
+     * from it using LevelManager (if the user didn't cancel out the window)
+     */
+    private void promptUserForLevelPack() {
+        var chooser = new FileChooser();
+        chooser.setTitle("Open level pack");
+        chooser.setInitialDirectory(new File("."));
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Level pack", "*.txt", "*.sok", "*.xsb"),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
+        File pack = chooser.showOpenDialog(new Stage());
+        if (pack == null)
+            return;
 
-        levelsListView.setItems(fileList);
-        LevelManager.getInstance().setMapDirectory(destFolder.getPath());
+        LevelManager.getInstance().setMapDirectory(pack.getPath());
         LevelManager.getInstance().loadLevelNamesFromDisk();
+        ThumbnailService.getInstance().clear();
+        levelsListView.setItems(LevelManagerAdapter.getInstance().getLevelNames());
     }
 
     public void refreshLevelListView() {
-        if (LevelManager.getInstance().getLevelNames() != levelsListView.getItems())
+        if (LevelManagerAdapter.getInstance().getLevelNames() != levelsListView.getItems())
             levelsListView.getItems().clear();
-            levelsListView.setItems(LevelManager.getInstance().getLevelNames());
+            levelsListView.setItems(LevelManagerAdapter.getInstance().getLevelNames());
     }
 }